@@ -2,8 +2,10 @@ package com.onlinestore;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class OnlineStoreApplication {
     public static void main(String[] args) {
         SpringApplication.run(OnlineStoreApplication.class, args);
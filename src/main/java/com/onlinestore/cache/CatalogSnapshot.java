@@ -0,0 +1,113 @@
+package com.onlinestore.cache;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+// Готовый ответ GET /products: JSON всего каталога и его gzip-копия в памяти.
+// Пересобирается в фоновом потоке после изменений товаров; новый снимок
+// подменяет старый одной записью в AtomicReference, поэтому читатель
+// всегда видит целый снимок (возможно, на одну пересборку старее).
+@Component
+public class CatalogSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+    // Несколько изменений подряд дают одну пересборку
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    // null, пока первый снимок не построен
+    public Snapshot current() {
+        return current.get();
+    }
+
+    public void rebuild() {
+        try {
+            // Версию берем до чтения: изменение во время сборки запланирует еще одну
+            long version = catalogVersion.get();
+
+            ByteArrayOutputStream json = new ByteArrayOutputStream(64 * 1024);
+            productService.writeAllProducts(json);
+            byte[] jsonBytes = json.toByteArray();
+
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream(jsonBytes.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+                out.write(jsonBytes);
+            }
+
+            current.set(new Snapshot(jsonBytes, gzip.toByteArray(), CatalogVersion.eTagOf(version)));
+            logger.info("Catalog snapshot built: {} bytes, {} gzipped", jsonBytes.length, gzip.size());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to build catalog snapshot: ", e);
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                rebuildScheduled.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static final class Snapshot {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String eTag;
+
+        public Snapshot(byte[] json, byte[] gzip, String eTag) {
+            this.json = json;
+            this.gzip = gzip;
+            this.eTag = eTag;
+        }
+
+        public byte[] getJson() { return json; }
+        public byte[] getGzip() { return gzip; }
+        public String getETag() { return eTag; }
+    }
+}
@@ -0,0 +1,33 @@
+package com.onlinestore.cache;
+
+import com.onlinestore.event.ProductChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Версия каталога для ETag списка товаров. Увеличивается после коммита любого
+// изменения товаров; начальное значение - время старта, чтобы после перезапуска
+// старые ETag клиентов не совпали случайно
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    public long get() {
+        return version.get();
+    }
+
+    public String eTag() {
+        return eTagOf(version.get());
+    }
+
+    public static String eTagOf(long version) {
+        return "\"catalog-" + version + "\"";
+    }
+}
@@ -0,0 +1,74 @@
+package com.onlinestore.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Кэш товаров по id перед ProductRepository. Caffeine (W-TinyLFU) ограничивает размер
+// и вытесняет редко читаемые товары. Обновляется после коммита по ProductChangedEvent
+// (write-through), TTL страхует от записей в обход ProductService.
+// Наружу отдаются только копии: вызывающий код часто меняет товар перед сохранением.
+@Component
+public class ProductCache {
+
+    private final Cache<Long, Product> cache;
+
+    public ProductCache(@Value("${app.cache.products.max-size:10000}") long maxSize,
+                        @Value("${app.cache.products.ttl-minutes:10}") long ttlMinutes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    // Товар из кэша или из loader; null, если товара нет (отсутствие не кэшируется)
+    public Product get(Long id, Function<Long, Product> loader) {
+        Product cached = cache.get(id, key -> {
+            Product loaded = loader.apply(key);
+            return loaded != null ? new Product(loaded) : null;
+        });
+        return cached != null ? new Product(cached) : null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.RELOADED) {
+            cache.invalidateAll();
+        } else if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            cache.invalidateAll(event.getProductIds());
+        } else {
+            for (Product product : event.getProducts()) {
+                if (product.getId() != null) {
+                    cache.put(product.getId(), new Product(product));
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("loadFailureCount", stats.loadFailureCount());
+        return result;
+    }
+}
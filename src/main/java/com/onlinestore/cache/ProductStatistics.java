@@ -0,0 +1,178 @@
+package com.onlinestore.cache;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Статистика каталога, поддерживаемая инкрементально по ProductChangedEvent:
+// чтение - O(1) без запросов к БД. Для каждого товара хранится его вклад
+// (цена в копейках и остаток), чтобы при изменении вычесть старый и прибавить новый.
+// Цены - Money, суммы - в копейках (long), без округлений double.
+@Component
+public class ProductStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductStatistics.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    // Порог "мало на складе" для lowStock
+    @Value("${app.stats.low-stock-threshold:5}")
+    private int lowStockThreshold = 5;
+
+    // id -> {цена в копейках, остаток}
+    private final Map<Long, long[]> contributions = new HashMap<>();
+    private long count;
+    private long sumPriceCents;
+    private long sumValueCents;
+    private long totalQuantity;
+    private long inStock;
+    private long outOfStock;
+    private long lowStock;
+
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            List<Object[]> rows = productRepository.findAllStockRows();
+            synchronized (this) {
+                clear();
+                for (Object[] row : rows) {
+                    add((Long) row[0], toCents((Money) row[1]), row[2] != null ? ((Number) row[2]).longValue() : 0);
+                }
+                ready = true;
+            }
+            logger.info("Product statistics built: {} products", rows.size());
+        } catch (Exception e) {
+            ready = false;
+            logger.error("Failed to build product statistics, falling back to aggregate query: ", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.RELOADED) {
+            rebuild();
+            return;
+        }
+        synchronized (this) {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                event.getProductIds().forEach(this::remove);
+            } else {
+                for (Product product : event.getProducts()) {
+                    if (product.getId() == null) {
+                        continue;
+                    }
+                    remove(product.getId());
+                    add(product.getId(), toCents(product.getPrice()),
+                            product.getQuantity() != null ? product.getQuantity() : 0);
+                }
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(count, sumPriceCents, sumValueCents, totalQuantity, inStock, outOfStock, lowStock);
+    }
+
+    private void add(Long id, long priceCents, long quantity) {
+        contributions.put(id, new long[] {priceCents, quantity});
+        apply(priceCents, quantity, 1);
+    }
+
+    private void remove(Long id) {
+        long[] old = contributions.remove(id);
+        if (old != null) {
+            apply(old[0], old[1], -1);
+        }
+    }
+
+    private void apply(long priceCents, long quantity, int sign) {
+        count += sign;
+        sumPriceCents += sign * priceCents;
+        sumValueCents += sign * priceCents * quantity;
+        totalQuantity += sign * quantity;
+        if (quantity > 0) {
+            inStock += sign;
+        } else {
+            outOfStock += sign;
+        }
+        if (quantity < lowStockThreshold) {
+            lowStock += sign;
+        }
+    }
+
+    private void clear() {
+        contributions.clear();
+        count = 0;
+        sumPriceCents = 0;
+        sumValueCents = 0;
+        totalQuantity = 0;
+        inStock = 0;
+        outOfStock = 0;
+        lowStock = 0;
+    }
+
+    public static long toCents(Money price) {
+        return price != null ? price.getMinorUnits() : 0;
+    }
+
+    // Неизменяемый срез статистики
+    public static final class Snapshot {
+        private final long count;
+        private final long sumPriceCents;
+        private final long sumValueCents;
+        private final long totalQuantity;
+        private final long inStock;
+        private final long outOfStock;
+        private final long lowStock;
+
+        public Snapshot(long count, long sumPriceCents, long sumValueCents, long totalQuantity,
+                        long inStock, long outOfStock, long lowStock) {
+            this.count = count;
+            this.sumPriceCents = sumPriceCents;
+            this.sumValueCents = sumValueCents;
+            this.totalQuantity = totalQuantity;
+            this.inStock = inStock;
+            this.outOfStock = outOfStock;
+            this.lowStock = lowStock;
+        }
+
+        public long getCount() { return count; }
+        public long getTotalQuantity() { return totalQuantity; }
+        public long getInStock() { return inStock; }
+        public long getOutOfStock() { return outOfStock; }
+        public long getLowStock() { return lowStock; }
+
+        public Money getTotalValue() {
+            return Money.ofMinor(sumValueCents);
+        }
+
+        // Округление до копейки half-up
+        public Money getAveragePrice() {
+            return count == 0 ? Money.ZERO : Money.ofMinor(Math.floorDiv(2 * sumPriceCents + count, 2 * count));
+        }
+    }
+}
@@ -1,23 +1,44 @@
 package com.onlinestore.controller;
 
+import com.onlinestore.cache.CatalogSnapshot;
+import com.onlinestore.cache.ProductStatistics;
+import com.onlinestore.dto.OrderRequest;
+import com.onlinestore.dto.ProductPageDto;
 import com.onlinestore.model.Product;
 import com.onlinestore.model.Order;
 import com.onlinestore.model.OrderItem;
 import com.onlinestore.model.User;
+import com.onlinestore.exception.InsufficientStockException;
+import com.onlinestore.service.AsyncOrderService;
+import com.onlinestore.service.AwaitStatusHistory;
+import com.onlinestore.service.IdempotencyService;
+import com.onlinestore.service.OrderCancellationService;
+import com.onlinestore.service.OrderIntakeService;
 import com.onlinestore.service.ProductService;
 import com.onlinestore.service.UserService;
 import com.onlinestore.repository.OrderRepository;
 import com.onlinestore.repository.ProductRepository;
+import com.onlinestore.search.FacetQuery;
+import com.onlinestore.search.FacetResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
-import java.math.BigDecimal;
 
 @RestController
 public class SimpleController {
@@ -28,14 +49,35 @@ public class SimpleController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private OrderIntakeService orderIntakeService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private AsyncOrderService asyncOrderService;
+
+    @Autowired
+    private OrderCancellationService cancellationService;
+
+    // Сколько ждать запись заказа в пачке
+    @Value("${app.orders.intake.timeout-ms:10000}")
+    private long orderTimeoutMs = 10000;
+
     @Autowired
     private OrderRepository orderRepository;
 
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SimpleController.class);
 
+    private static final int MAX_SEARCH_LIMIT = 200;
+
     @GetMapping("/")
     public String home() {
         return "Online Store API v1.0 - Java 11";
@@ -71,6 +113,8 @@ public class SimpleController {
             "GET /products - Все продукты",
             "POST /products - Создать продукт",
             "POST /api/orders - Создать заказ",
+            "POST /api/orders/async - Принять заказ асинхронно (202)",
+            "GET /api/orders/async/{requestId} - Статус асинхронного заказа",
             "GET /api/orders/user/{userId} - Заказы пользователя",
             "GET /api/orders/{id} - Детали заказа",
             "PATCH /api/orders/{id}/cancel - Отменить заказ"
@@ -80,15 +124,75 @@ public class SimpleController {
 
     // ========== PRODUCT ENDPOINTS ==========
 
+    // Каталог отдается из готового снимка (JSON или gzip по Accept-Encoding) простым копированием байт.
+    // Пока снимка нет - потоково из БД. ETag = версия каталога, при совпадении 304 без чтения БД
     @GetMapping("/products")
-    public ResponseEntity<List<Product>> getAllProducts() {
+    public void getAllProducts(WebRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        CatalogSnapshot.Snapshot snapshot = catalogSnapshot.current();
+        if (snapshot == null) {
+            if (request.checkNotModified(productService.getCatalogETag())) {
+                return;
+            }
+            logger.info("Streaming all products");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            productService.writeAllProducts(response.getOutputStream());
+            return;
+        }
+
+        if (request.checkNotModified(snapshot.getETag())) {
+            return;
+        }
+        byte[] body = snapshot.getJson();
+        if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            body = snapshot.getGzip();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    // gzip разрешен, если указан в Accept-Encoding (явно или через *) и не запрещен q=0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().replace(" ", "");
+                if (param.matches("q=0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Постраничный каталог с курсором вместо OFFSET: nextCursor из ответа передается в следующий запрос
+    @GetMapping("/products/page")
+    public ResponseEntity<ProductPageDto> getProductsPage(
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         try {
-            logger.info("Getting all products");
-            List<Product> products = productService.getAllProducts();
-            logger.info("Found {} products", products.size());
-            return ResponseEntity.ok(products);
+            int cappedSize = Math.max(1, Math.min(size, MAX_SEARCH_LIMIT));
+            return ResponseEntity.ok(productService.getProductsPage(sort, cursor, cappedSize));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Bad products page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
-            logger.error("Error getting products: ", e);
+            logger.error("Error getting products page: ", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
@@ -99,7 +203,13 @@ public class SimpleController {
             logger.info("Getting product by id: {}", id);
             Product product = productService.getProductById(id);
             if (product != null) {
-                return ResponseEntity.ok(product);
+                // Товар берется из кэша; при совпадении ETag Spring ответит 304 без сериализации
+                ResponseEntity.BodyBuilder ok = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+                String eTag = productService.getProductETag(product);
+                if (eTag != null) {
+                    ok.eTag(eTag);
+                }
+                return ok.body(product);
             }
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         } catch (Exception e) {
@@ -137,46 +247,96 @@ public class SimpleController {
     }
 
     @GetMapping("/products/search")
-    public ResponseEntity<List<Product>> searchProducts(@RequestParam(required = false) String keyword) {
+    public ResponseEntity<List<Product>> searchProducts(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(defaultValue = "index") String mode,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            logger.info("Searching products with keyword: {}", keyword);
-            List<Product> allProducts = productService.getAllProducts();
+            logger.info("Searching products with keyword: {}, mode: {}", keyword, mode);
 
             if (keyword == null || keyword.trim().isEmpty()) {
-                return ResponseEntity.ok(allProducts);
+                return ResponseEntity.ok(productService.getAllProducts());
             }
 
-            String searchTerm = keyword.toLowerCase().trim();
-            List<Product> filtered = allProducts.stream()
-                    .filter(p -> p.getName().toLowerCase().contains(searchTerm) ||
-                                 (p.getDescription() != null &&
-                                  p.getDescription().toLowerCase().contains(searchTerm)))
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(filtered);
+            int cappedLimit = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+            List<Product> found;
+            switch (mode.toLowerCase()) {
+                case "index":
+                    found = productService.searchProducts(keyword.trim());
+                    break;
+                case "fulltext":
+                    found = productService.searchProducts(keyword.trim(), cappedLimit);
+                    break;
+                case "fuzzy":
+                    found = productService.fuzzySearchProducts(keyword.trim(), cappedLimit);
+                    break;
+                default:
+                    return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.ok(found);
         } catch (Exception e) {
             logger.error("Error searching products: ", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    @GetMapping("/products/suggest")
+    public ResponseEntity<List<String>> suggestProducts(@RequestParam String prefix) {
+        try {
+            return ResponseEntity.ok(productService.suggestProductNames(prefix));
+        } catch (Exception e) {
+            logger.error("Error suggesting products for prefix {}: ", prefix, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/products/facets")
+    public ResponseEntity<Map<String, Object>> getCatalogFacets(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            logger.info("Catalog query: category={}, price=[{}, {}], inStock={}", categoryId, minPrice, maxPrice, inStock);
+            FacetResult result = productService.searchCatalog(new FacetQuery(categoryId, minPrice, maxPrice, inStock));
+
+            List<Long> ids = result.getProductIds();
+            int from = Math.min(Math.max(page, 0) * Math.max(size, 1), ids.size());
+            int to = Math.min(from + Math.max(size, 1), ids.size());
+
+            Map<String, Object> availability = new HashMap<>();
+            availability.put("inStock", result.getInStock());
+            availability.put("outOfStock", result.getOutOfStock());
+
+            Map<String, Object> facets = new HashMap<>();
+            facets.put("categories", result.getCategories());
+            facets.put("priceRanges", result.getPriceBuckets());
+            facets.put("availability", availability);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("products", productService.getProductsByIds(ids.subList(from, to)));
+            response.put("totalItems", ids.size());
+            response.put("currentPage", page);
+            response.put("facets", facets);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error querying catalog facets: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @PutMapping("/products/{id}")
     public ResponseEntity<Product> updateProduct(
             @PathVariable Long id,
             @RequestBody Product updatedProduct) {
         try {
             logger.info("Updating product: {}", id);
-            Product existingProduct = productService.getProductById(id);
-            if (existingProduct == null) {
+            Product savedProduct = productService.updateProduct(id, updatedProduct);
+            if (savedProduct == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
-
-            existingProduct.setName(updatedProduct.getName());
-            existingProduct.setDescription(updatedProduct.getDescription());
-            existingProduct.setPrice(updatedProduct.getPrice());
-            existingProduct.setQuantity(updatedProduct.getQuantity());
-            existingProduct.setUpdatedAt(LocalDateTime.now());
-
-            Product savedProduct = productService.saveProduct(existingProduct);
             return ResponseEntity.ok(savedProduct);
         } catch (Exception e) {
             logger.error("Error updating product {}: ", id, e);
@@ -188,35 +348,15 @@ public class SimpleController {
     public ResponseEntity<Map<String, Object>> getStats() {
         try {
             logger.info("Getting product statistics");
-            List<Product> products = productService.getAllProducts();
+            ProductStatistics.Snapshot snapshot = productService.getStatistics();
 
             Map<String, Object> stats = new HashMap<>();
-            stats.put("totalProducts", products.size());
-
-            double totalValue = 0;
-            double totalPrice = 0;
-            int inStock = 0;
-            int outOfStock = 0;
-            int totalQuantity = 0;
-
-            for (Product p : products) {
-                totalValue += p.getPrice() * p.getQuantity();
-                totalPrice += p.getPrice();
-                totalQuantity += p.getQuantity();
-                if (p.getQuantity() > 0) {
-                    inStock++;
-                } else {
-                    outOfStock++;
-                }
-            }
-
-            double averagePrice = products.isEmpty() ? 0.0 : totalPrice / products.size();
-
-            stats.put("totalValue", String.format("%.2f", totalValue));
-            stats.put("averagePrice", String.format("%.2f", averagePrice));
-            stats.put("totalQuantity", totalQuantity);
-            stats.put("inStock", inStock);
-            stats.put("outOfStock", outOfStock);
+            stats.put("totalProducts", snapshot.getCount());
+            stats.put("totalValue", snapshot.getTotalValue().toString());
+            stats.put("averagePrice", snapshot.getAveragePrice().toString());
+            stats.put("totalQuantity", snapshot.getTotalQuantity());
+            stats.put("inStock", snapshot.getInStock());
+            stats.put("outOfStock", snapshot.getOutOfStock());
             stats.put("timestamp", System.currentTimeMillis());
 
             return ResponseEntity.ok(stats);
@@ -235,20 +375,10 @@ public class SimpleController {
             @RequestParam int quantity) {
         try {
             logger.info("Updating stock for product {}: quantity={}", id, quantity);
-            Product product = productService.getProductById(id);
-            if (product == null) {
+            Product savedProduct = productService.adjustQuantity(id, quantity);
+            if (savedProduct == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
-
-            int newQuantity = product.getQuantity() + quantity;
-            if (newQuantity < 0) {
-                newQuantity = 0;
-            }
-
-            product.setQuantity(newQuantity);
-            product.setUpdatedAt(LocalDateTime.now());
-
-            Product savedProduct = productService.saveProduct(product);
             return ResponseEntity.ok(savedProduct);
         } catch (Exception e) {
             logger.error("Error updating stock for product {}: ", id, e);
@@ -258,75 +388,40 @@ public class SimpleController {
 
     // ========== ORDER ENDPOINTS FOR CUSTOMERS ==========
 
+    // С заголовком Idempotency-Key повтор запроса возвращает исходный ответ, а не создает второй заказ
     @PostMapping("/api/orders")
-    @Transactional
-    public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> orderData) {
+    public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> orderData,
+                                         @RequestHeader(value = IdempotencyService.HEADER, required = false)
+                                         String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return placeOrder(orderData);
+        }
+        return idempotencyService.execute(idempotencyKey, orderData, () -> placeOrder(orderData));
+    }
+
+    private ResponseEntity<?> placeOrder(Map<String, Object> orderData) {
         try {
             logger.info("Creating order with data: {}", orderData);
             
-            Long userId = Long.parseLong(orderData.get("userId").toString());
-            String shippingAddress = (String) orderData.getOrDefault("shippingAddress", "");
-            List<Map<String, Object>> items = (List<Map<String, Object>>) orderData.get("items");
-            
-            if (items == null || items.isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Order must have at least one item"));
+            OrderRequest request = parseOrderRequest(orderData);
+            String invalid = validateOrderRequest(request);
+            if (invalid != null) {
+                return ResponseEntity.badRequest().body(Map.of("error", invalid));
             }
             
-            // Получаем пользователя
-            User user = userService.getUserById(userId);
-            if (user == null) {
-                return ResponseEntity.badRequest().body(Map.of("error", "User not found: " + userId));
-            }
-            
-            // Создаем заказ
-            Order order = new Order(user, shippingAddress);
+            // Заказ пишется пачкой вместе с параллельными заказами (групповой коммит)
+            Order savedOrder = orderIntakeService.place(request, orderTimeoutMs);
             
             List<Map<String, Object>> orderItemsResponse = new ArrayList<>();
-            
-            for (Map<String, Object> itemData : items) {
-                Long productId = Long.parseLong(itemData.get("productId").toString());
-                int quantity = Integer.parseInt(itemData.get("quantity").toString());
-                
-                // Получаем товар
-                Product product = productRepository.findById(productId).orElse(null);
-                if (product == null) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Product not found: " + productId));
-                }
-                
-                // Проверяем наличие
-                if (product.getQuantity() < quantity) {
-                    return ResponseEntity.badRequest().body(Map.of(
-                        "error", "Not enough stock for product: " + product.getName(),
-                        "available", product.getQuantity(),
-                        "requested", quantity
-                    ));
-                }
-                
-                // Создаем позицию заказа
-                OrderItem item = new OrderItem();
-                item.setProduct(product);
-                item.setQuantity(quantity);
-                item.setPrice(BigDecimal.valueOf(product.getPrice()));
-                item.setOrder(order);
-                
-                order.addItem(item);
-                
-                // Уменьшаем количество на складе
-                product.setQuantity(product.getQuantity() - quantity);
-                product.setUpdatedAt(LocalDateTime.now());
-                productRepository.save(product);
-                
+            for (OrderItem item : savedOrder.getItems()) {
                 Map<String, Object> itemResponse = new HashMap<>();
-                itemResponse.put("productId", productId);
-                itemResponse.put("productName", product.getName());
-                itemResponse.put("quantity", quantity);
-                itemResponse.put("price", product.getPrice());
+                itemResponse.put("productId", item.getProduct().getId());
+                itemResponse.put("productName", item.getProduct().getName());
+                itemResponse.put("quantity", item.getQuantity());
+                itemResponse.put("price", item.getProduct().getPrice());
                 orderItemsResponse.add(itemResponse);
             }
             
-            // Сохраняем заказ (каскадно сохранятся и items)
-            Order savedOrder = orderRepository.save(order);
-            
             Map<String, Object> response = new HashMap<>();
             response.put("id", savedOrder.getId());
             response.put("totalAmount", savedOrder.getTotalAmount());
@@ -338,6 +433,16 @@ public class SimpleController {
             logger.info("Order created successfully with id: {}", savedOrder.getId());
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
             
+        } catch (ExecutionException e) {
+            return orderFailure(e.getCause());
+        } catch (TimeoutException | RejectedExecutionException e) {
+            logger.warn("Order intake is overloaded: {}", e.toString());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Order intake is overloaded, please retry"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Order intake interrupted"));
         } catch (Exception e) {
             logger.error("Error creating order: ", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -345,6 +450,116 @@ public class SimpleController {
         }
     }
 
+    private OrderRequest parseOrderRequest(Map<String, Object> orderData) {
+        Long userId = Long.parseLong(orderData.get("userId").toString());
+        String shippingAddress = (String) orderData.getOrDefault("shippingAddress", "");
+        List<Map<String, Object>> items = (List<Map<String, Object>>) orderData.get("items");
+        
+        OrderRequest request = new OrderRequest(userId, shippingAddress);
+        if (items != null) {
+            for (Map<String, Object> itemData : items) {
+                request.addItem(Long.parseLong(itemData.get("productId").toString()),
+                        Integer.parseInt(itemData.get("quantity").toString()));
+            }
+        }
+        return request;
+    }
+
+    private String validateOrderRequest(OrderRequest request) {
+        if (request.getItems().isEmpty()) {
+            return "Order must have at least one item";
+        }
+        for (OrderRequest.Item item : request.getItems()) {
+            if (item.getQuantity() <= 0) {
+                return "Quantity must be positive: " + item.getProductId();
+            }
+        }
+        return null;
+    }
+
+    // Асинхронный прием: 202 и адрес статуса сразу, заказ сохраняется воркером; очередь заполнена - 429
+    @PostMapping("/api/orders/async")
+    public ResponseEntity<?> createOrderAsync(@RequestBody Map<String, Object> orderData,
+                                              @RequestHeader(value = IdempotencyService.HEADER, required = false)
+                                              String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return acceptOrder(orderData);
+        }
+        return idempotencyService.execute(idempotencyKey, orderData, () -> acceptOrder(orderData));
+    }
+
+    private ResponseEntity<?> acceptOrder(Map<String, Object> orderData) {
+        OrderRequest request;
+        try {
+            request = parseOrderRequest(orderData);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid order request: " + e.getMessage()));
+        }
+        String invalid = validateOrderRequest(request);
+        if (invalid != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", invalid));
+        }
+        try {
+            AsyncOrderService.Status status = asyncOrderService.accept(request);
+            String statusUrl = "/api/orders/async/" + status.getRequestId();
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, statusUrl)
+                    .body(Map.of(
+                        "requestId", status.getRequestId(),
+                        "status", status.getState(),
+                        "statusUrl", statusUrl
+                    ));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Async order queue is full");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "Too many pending orders, please retry later"));
+        }
+    }
+
+    @GetMapping("/api/orders/async/{requestId}")
+    public ResponseEntity<?> getAsyncOrderStatus(@PathVariable String requestId) {
+        AsyncOrderService.Status status = asyncOrderService.getStatus(requestId);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Order request not found: " + requestId));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("requestId", status.getRequestId());
+        response.put("status", status.getState());
+        response.put("acceptedAt", status.getAcceptedAt());
+        response.put("updatedAt", status.getUpdatedAt());
+        if (status.getOrderId() != null) {
+            response.put("orderId", status.getOrderId());
+            response.put("orderUrl", "/api/orders/" + status.getOrderId());
+        }
+        if (status.getError() != null) {
+            response.put("error", status.getError());
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    // Отказ по заказу: нет пользователя/товара или не хватает остатка - 400
+    private ResponseEntity<?> orderFailure(Throwable cause) {
+        if (cause instanceof InsufficientStockException) {
+            InsufficientStockException e = (InsufficientStockException) cause;
+            if (e.isProductMissing()) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", e.getMessage(),
+                "available", e.getAvailable(),
+                "requested", e.getRequested()
+            ));
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(Map.of("error", cause.getMessage()));
+        }
+        logger.error("Error creating order: ", cause);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to create order: " + cause.getMessage()));
+    }
+
     @GetMapping("/api/orders/user/{userId}")
     @Transactional(readOnly = true)
     public ResponseEntity<?> getOrdersByUser(@PathVariable Long userId) {
@@ -425,36 +640,22 @@ public class SimpleController {
 
     @PatchMapping("/api/orders/{orderId}/cancel")
     @Transactional
+    @AwaitStatusHistory
     public ResponseEntity<?> cancelOrder(@PathVariable Long orderId) {
         try {
             logger.info("Cancelling order: {}", orderId);
             
-            Order order = orderRepository.findById(orderId).orElse(null);
-            if (order == null) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            // Проверяем можно ли отменить заказ
-            if (!order.canBeCancelled()) {
+            // Смена статуса и возврат всех позиций на склад - один оператор
+            if (cancellationService.cancel(List.of(orderId), OrderCancellationService.CANCELLABLE).isEmpty()) {
+                Order order = orderRepository.findById(orderId).orElse(null);
+                if (order == null) {
+                    return ResponseEntity.notFound().build();
+                }
                 return ResponseEntity.badRequest().body(Map.of(
                     "error", "Cannot cancel order with status: " + order.getStatus()
                 ));
             }
             
-            // Отменяем заказ
-            order.cancel();
-            order.setUpdatedAt(LocalDateTime.now());
-            
-            // Возвращаем товары на склад
-            for (OrderItem item : order.getItems()) {
-                Product product = item.getProduct();
-                product.setQuantity(product.getQuantity() + item.getQuantity());
-                product.setUpdatedAt(LocalDateTime.now());
-                productRepository.save(product);
-            }
-            
-            orderRepository.save(order);
-            
             logger.info("Order {} cancelled successfully", orderId);
             return ResponseEntity.ok(Map.of(
                 "id", orderId,
@@ -1,19 +1,30 @@
 package com.onlinestore.controller.admin;
 
 import com.onlinestore.dto.OrderDto;
+import com.onlinestore.model.Money;
 import com.onlinestore.model.Order;
+import com.onlinestore.model.OrderStatusHistory;
 import com.onlinestore.repository.OrderRepository;
+import com.onlinestore.repository.OrderStatusHistoryRepository;
+import com.onlinestore.service.AsyncOrderService;
+import com.onlinestore.service.AwaitStatusHistory;
+import com.onlinestore.service.OrderCancellationService;
+import com.onlinestore.service.OrderIntakeService;
+import com.onlinestore.util.JsonStreamWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/admin/orders")
@@ -22,15 +33,30 @@ public class AdminOrderController {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private JsonStreamWriter jsonStreamWriter;
+
+    @Autowired
+    private AsyncOrderService asyncOrderService;
+
+    @Autowired
+    private OrderIntakeService orderIntakeService;
+
+    @Autowired
+    private OrderStatusHistoryRepository historyRepository;
+
+    @Autowired
+    private OrderCancellationService cancellationService;
+
     // ============= GET METHODS =============
 
     @GetMapping
     @Transactional(readOnly = true)
-    public List<OrderDto> getAllOrders() {
-        return orderRepository.findAllByOrderByOrderDateDesc()
-                .stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    public void getAllOrders(HttpServletResponse response) throws IOException {
+        // Потоково: заказы не собираются в список целиком
+        try (Stream<Order> orders = orderRepository.streamAllByOrderByOrderDateDesc()) {
+            jsonStreamWriter.writeArray(response, orders, this::convertToDto);
+        }
     }
 
     @GetMapping("/{id}")
@@ -43,6 +69,15 @@ public class AdminOrderController {
         return new ResponseEntity<>(convertToDto(order), HttpStatus.OK);
     }
 
+    // История статусов заказа (последние переходы могут быть еще в буфере записи)
+    @GetMapping("/{id}/history")
+    public ResponseEntity<List<OrderStatusHistory>> getOrderStatusHistory(@PathVariable Long id) {
+        if (!orderRepository.existsById(id)) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(historyRepository.findByOrderIdOrderByChangedAtAscIdAsc(id), HttpStatus.OK);
+    }
+
     @GetMapping("/status/{status}")
     @Transactional(readOnly = true)
     public ResponseEntity<List<OrderDto>> getOrdersByStatus(@PathVariable String status) {
@@ -104,24 +139,33 @@ public class AdminOrderController {
         stats.put("averageOrderAmount", avgAmount != null ? avgAmount : 0.0);
         
         // Общая выручка
-        Double totalRevenue = orderRepository.getTotalRevenue();
-        stats.put("totalRevenue", totalRevenue != null ? totalRevenue : 0.0);
+        Money totalRevenue = orderRepository.getTotalRevenue();
+        stats.put("totalRevenue", totalRevenue != null ? totalRevenue : Money.ZERO);
         
         // Выручка сегодня
-        Double todayRevenue = orderRepository.getRevenueBetweenDates(startOfDay, endOfDay);
-        stats.put("todayRevenue", todayRevenue != null ? todayRevenue : 0.0);
+        Money todayRevenue = orderRepository.getRevenueBetweenDates(startOfDay, endOfDay);
+        stats.put("todayRevenue", todayRevenue != null ? todayRevenue : Money.ZERO);
         
         // Максимальная сумма заказа
-        Double maxOrderAmount = orderRepository.getMaxOrderAmount();
-        stats.put("maxOrderAmount", maxOrderAmount != null ? maxOrderAmount : 0.0);
+        Money maxOrderAmount = orderRepository.getMaxOrderAmount();
+        stats.put("maxOrderAmount", maxOrderAmount != null ? maxOrderAmount : Money.ZERO);
         
         return new ResponseEntity<>(stats, HttpStatus.OK);
     }
 
+    // Очереди приема заказов: глубина, воркеры, задержка обработки
+    @GetMapping("/async/stats")
+    public ResponseEntity<Map<String, Object>> getOrderQueueStatistics() {
+        Map<String, Object> stats = new HashMap<>(asyncOrderService.getMetrics());
+        stats.put("intakeQueueDepth", orderIntakeService.getQueueDepth());
+        return new ResponseEntity<>(stats, HttpStatus.OK);
+    }
+
     // ============= UPDATE METHODS =============
 
     @PatchMapping("/{id}/status")
     @Transactional
+    @AwaitStatusHistory
     public ResponseEntity<OrderDto> updateOrderStatus(
             @PathVariable Long id,
             @RequestParam String status) {
@@ -134,6 +178,18 @@ public class AdminOrderController {
         return new ResponseEntity<>(convertToDto(updatedOrder), HttpStatus.OK);
     }
 
+    // Массовая отмена (например, при сбое платежного провайдера): заказы не в PENDING/PROCESSING пропускаются
+    @PostMapping("/cancel")
+    @AwaitStatusHistory
+    public ResponseEntity<Map<String, Object>> cancelOrders(@RequestBody List<Long> ids) {
+        List<Long> cancelled = cancellationService.cancel(ids, OrderCancellationService.CANCELLABLE);
+        Map<String, Object> result = new HashMap<>();
+        result.put("requested", ids.size());
+        result.put("cancelled", cancelled.size());
+        result.put("cancelledIds", cancelled);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
     // ============= HELPER METHODS =============
 
     private OrderDto convertToDto(Order order) {
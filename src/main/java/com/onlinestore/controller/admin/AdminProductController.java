@@ -1,7 +1,14 @@
 package com.onlinestore.controller.admin;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlinestore.cache.ProductStatistics;
+import com.onlinestore.dto.ProductBulkRequest;
 import com.onlinestore.dto.ProductDto;
+import com.onlinestore.model.Money;
 import com.onlinestore.model.Product;
+import com.onlinestore.service.FlashSaleService;
+import com.onlinestore.service.ProductImportService;
 import com.onlinestore.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -9,11 +16,19 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -27,9 +42,22 @@ import java.util.stream.Collectors;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminProductController {
 
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private static final int MAX_IMPORT_CHUNK_SIZE = 10000;
+
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     // ============= GET METHODS =============
 
     @GetMapping
@@ -83,6 +111,42 @@ public class AdminProductController {
         return new ResponseEntity<>(createdProducts, HttpStatus.CREATED);
     }
 
+    // Потоковый импорт каталога: тело - CSV (заголовок name,description,price,quantity)
+    // или NDJSON (объект на строку). Ответ - NDJSON: отчет по каждому чанку по мере
+    // коммита, последней строкой - итог
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public void importProducts(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            @RequestParam(defaultValue = "1000") int chunkSize) throws IOException {
+        ProductImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(TEXT_CSV) ? ProductImportService.Format.CSV : ProductImportService.Format.NDJSON;
+        int cappedChunkSize = Math.max(1, Math.min(chunkSize, MAX_IMPORT_CHUNK_SIZE));
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+        Reader body = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8);
+        try {
+            Map<String, Object> summary = productImportService.importProducts(body, format, cappedChunkSize,
+                    report -> writeLine(out, report));
+            writeLine(out, summary);
+        } catch (IllegalArgumentException e) {
+            response.reset();
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        }
+    }
+
+    private void writeLine(PrintWriter out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsString(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        out.write('\n');
+        out.flush();
+    }
+
     // ============= UPDATE METHODS =============
 
     @PutMapping("/{id}")
@@ -161,6 +225,43 @@ public class AdminProductController {
         return new ResponseEntity<>(product, HttpStatus.OK);
     }
 
+    // ============= FLASH SALE =============
+
+    // Товары в режиме flash-продажи и их остатки в памяти
+    @GetMapping("/flash-sales")
+    public ResponseEntity<Map<Long, Integer>> getFlashSales() {
+        return new ResponseEntity<>(flashSaleService.getActiveSales(), HttpStatus.OK);
+    }
+
+    @PostMapping("/{id}/flash-sale")
+    public ResponseEntity<Map<String, Object>> startFlashSale(@PathVariable Long id) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("productId", id);
+            response.put("quantity", flashSaleService.start(id));
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        } catch (IllegalStateException e) {
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+        }
+    }
+
+    @DeleteMapping("/{id}/flash-sale")
+    public ResponseEntity<Map<String, Object>> stopFlashSale(@PathVariable Long id) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("productId", id);
+            response.put("quantity", flashSaleService.stop(id));
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+        }
+    }
+
     // ============= BULK OPERATIONS =============
 
     @PostMapping("/bulk/update-prices")
@@ -172,20 +273,39 @@ public class AdminProductController {
         return new ResponseEntity<>(updatedCount, HttpStatus.OK);
     }
 
+    // Массовая операция по фильтру (категория, цена, остаток, список id)
+    @PostMapping("/bulk")
+    public ResponseEntity<Map<String, Object>> bulkUpdate(@RequestBody ProductBulkRequest request) {
+        try {
+            return new ResponseEntity<>(productService.bulkUpdate(request), HttpStatus.OK);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+        }
+    }
+
     // ============= STATISTICS =============
 
     @GetMapping("/statistics")
     public ResponseEntity<Map<String, Object>> getProductStatistics() {
+        ProductStatistics.Snapshot snapshot = productService.getStatistics();
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalProducts", productService.getTotalCount());
-        stats.put("totalValue", productService.getTotalInventoryValue());
-        stats.put("averagePrice", productService.getAveragePrice());
-        stats.put("outOfStock", productService.getOutOfStockCount());
-        stats.put("lowStock", productService.getLowStockCount(5));
+        stats.put("totalProducts", snapshot.getCount());
+        stats.put("totalValue", snapshot.getTotalValue());
+        stats.put("averagePrice", snapshot.getAveragePrice());
+        stats.put("outOfStock", snapshot.getOutOfStock());
+        stats.put("lowStock", snapshot.getLowStock());
         
         return new ResponseEntity<>(stats, HttpStatus.OK);
     }
 
+    // Счетчики кэша товаров: попадания, промахи, вытеснения
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        return new ResponseEntity<>(productService.getCacheStats(), HttpStatus.OK);
+    }
+
     // ============= HELPER METHODS =============
 
     private Product convertToEntity(ProductDto dto) {
@@ -193,9 +313,10 @@ public class AdminProductController {
         product.setName(dto.getName());
         product.setDescription(dto.getDescription());
         if (dto.getPrice() != null) {
-            product.setPrice(dto.getPrice().doubleValue());
+            product.setPrice(Money.of(dto.getPrice()));
         }
         product.setQuantity(dto.getQuantity());
+        product.setIsActive(dto.getIsActive());
         return product;
     }
 
@@ -203,7 +324,7 @@ public class AdminProductController {
         product.setName(dto.getName());
         product.setDescription(dto.getDescription());
         if (dto.getPrice() != null) {
-            product.setPrice(dto.getPrice().doubleValue());
+            product.setPrice(Money.of(dto.getPrice()));
         }
         product.setQuantity(dto.getQuantity());
     }
@@ -223,7 +344,8 @@ public class AdminProductController {
                     break;
                 case "price":
                     if (value instanceof Number) {
-                        product.setPrice(((Number) value).doubleValue());
+                        // Через строку: Double из JSON не должен терять копейки
+                        product.setPrice(Money.parse(value.toString()));
                     }
                     break;
                 case "quantity":
@@ -5,19 +5,24 @@ import com.onlinestore.model.User;
 import com.onlinestore.model.UserRole;
 import com.onlinestore.repository.OrderRepository;
 import com.onlinestore.repository.UserRepository;
+import com.onlinestore.util.JsonStreamWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/admin/users")
@@ -30,16 +35,20 @@ public class AdminUserController {
     @Autowired
     private OrderRepository orderRepository;
     
+    @Autowired
+    private JsonStreamWriter jsonStreamWriter;
+    
     private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
 
     // ============= GET METHODS =============
 
     // Получить всех пользователей
     @GetMapping
-    public List<UserDto> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public void getAllUsers(HttpServletResponse response) throws IOException {
+        try (Stream<User> users = userRepository.streamAll()) {
+            jsonStreamWriter.writeArray(response, users, this::convertToDto);
+        }
     }
 
     // Получить пользователя по ID
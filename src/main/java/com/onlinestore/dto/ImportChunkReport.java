@@ -0,0 +1,41 @@
+package com.onlinestore.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Отчет об одном чанке потокового импорта товаров
+public class ImportChunkReport {
+    private int chunk;
+    private long firstLine;
+    private long lastLine;
+    private int imported;
+    private int failed;
+    private List<String> errors = new ArrayList<>();
+
+    // Конструкторы
+    public ImportChunkReport() {}
+
+    public ImportChunkReport(int chunk, long firstLine) {
+        this.chunk = chunk;
+        this.firstLine = firstLine;
+    }
+
+    // Геттеры и сеттеры
+    public int getChunk() { return chunk; }
+    public void setChunk(int chunk) { this.chunk = chunk; }
+
+    public long getFirstLine() { return firstLine; }
+    public void setFirstLine(long firstLine) { this.firstLine = firstLine; }
+
+    public long getLastLine() { return lastLine; }
+    public void setLastLine(long lastLine) { this.lastLine = lastLine; }
+
+    public int getImported() { return imported; }
+    public void setImported(int imported) { this.imported = imported; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public List<String> getErrors() { return errors; }
+    public void setErrors(List<String> errors) { this.errors = errors; }
+}
@@ -1,5 +1,6 @@
 package com.onlinestore.dto;
 
+import com.onlinestore.model.Money;
 import java.time.LocalDateTime;
 
 public class OrderDto {
@@ -8,7 +9,7 @@ public class OrderDto {
     private String userName;
     private String userEmail;
     private LocalDateTime orderDate;
-    private Double totalAmount;
+    private Money totalAmount;
     private String status;
     private String shippingAddress;
 
@@ -16,7 +17,7 @@ public class OrderDto {
     public OrderDto() {}
 
     public OrderDto(Long id, Long userId, String userName, String userEmail, 
-                   LocalDateTime orderDate, Double totalAmount, String status, 
+                   LocalDateTime orderDate, Money totalAmount, String status, 
                    String shippingAddress) {
         this.id = id;
         this.userId = userId;
@@ -34,7 +35,7 @@ public class OrderDto {
     public String getUserName() { return userName; }
     public String getUserEmail() { return userEmail; }
     public LocalDateTime getOrderDate() { return orderDate; }
-    public Double getTotalAmount() { return totalAmount; }
+    public Money getTotalAmount() { return totalAmount; }
     public String getStatus() { return status; }
     public String getShippingAddress() { return shippingAddress; }
 
@@ -44,7 +45,7 @@ public class OrderDto {
     public void setUserName(String userName) { this.userName = userName; }
     public void setUserEmail(String userEmail) { this.userEmail = userEmail; }
     public void setOrderDate(LocalDateTime orderDate) { this.orderDate = orderDate; }
-    public void setTotalAmount(Double totalAmount) { this.totalAmount = totalAmount; }
+    public void setTotalAmount(Money totalAmount) { this.totalAmount = totalAmount; }
     public void setStatus(String status) { this.status = status; }
     public void setShippingAddress(String shippingAddress) { this.shippingAddress = shippingAddress; }
 }
@@ -0,0 +1,63 @@
+package com.onlinestore.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Заказ покупателя: пользователь, адрес и позиции в порядке запроса
+public class OrderRequest {
+
+    private Long userId;
+    private String shippingAddress;
+    private List<Item> items = new ArrayList<>();
+
+    // Конструкторы
+    public OrderRequest() {}
+
+    public OrderRequest(Long userId, String shippingAddress) {
+        this.userId = userId;
+        this.shippingAddress = shippingAddress;
+    }
+
+    public void addItem(Long productId, int quantity) {
+        items.add(new Item(productId, quantity));
+    }
+
+    // Количества по товарам; повторяющиеся позиции складываются
+    public Map<Long, Integer> quantities() {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (Item item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    // Геттеры и сеттеры
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public String getShippingAddress() { return shippingAddress; }
+    public void setShippingAddress(String shippingAddress) { this.shippingAddress = shippingAddress; }
+
+    public List<Item> getItems() { return items; }
+    public void setItems(List<Item> items) { this.items = items; }
+
+    public static class Item {
+        private Long productId;
+        private int quantity;
+
+        public Item() {}
+
+        public Item(Long productId, int quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        public Long getProductId() { return productId; }
+        public void setProductId(Long productId) { this.productId = productId; }
+
+        public int getQuantity() { return quantity; }
+        public void setQuantity(int quantity) { this.quantity = quantity; }
+    }
+}
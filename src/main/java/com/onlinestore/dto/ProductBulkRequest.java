@@ -0,0 +1,71 @@
+package com.onlinestore.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Массовая операция над товарами: фильтр (все условия через AND) + операция
+public class ProductBulkRequest {
+
+    public enum Operation {
+        PRICE_PERCENT,   // цена * (1 + value / 100)
+        PRICE_ADD,       // цена + value
+        QUANTITY_SET,    // остаток = value
+        QUANTITY_ADD,    // остаток + value (не ниже 0)
+        ACTIVATE,
+        DEACTIVATE,
+        DELETE
+    }
+
+    private Operation operation;
+    private BigDecimal value;
+
+    // Фильтр; null - условие не применяется
+    private Long categoryId;
+    private String category;
+    private Double minPrice;
+    private Double maxPrice;
+    private Integer minQuantity;
+    private Integer maxQuantity;
+    private List<Long> ids;
+
+    // Конструкторы
+    public ProductBulkRequest() {}
+
+    public ProductBulkRequest(Operation operation, BigDecimal value) {
+        this.operation = operation;
+        this.value = value;
+    }
+
+    // Геттеры и сеттеры
+    public Operation getOperation() { return operation; }
+    public void setOperation(Operation operation) { this.operation = operation; }
+
+    public BigDecimal getValue() { return value; }
+    public void setValue(BigDecimal value) { this.value = value; }
+
+    public Long getCategoryId() { return categoryId; }
+    public void setCategoryId(Long categoryId) { this.categoryId = categoryId; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public Double getMinPrice() { return minPrice; }
+    public void setMinPrice(Double minPrice) { this.minPrice = minPrice; }
+
+    public Double getMaxPrice() { return maxPrice; }
+    public void setMaxPrice(Double maxPrice) { this.maxPrice = maxPrice; }
+
+    public Integer getMinQuantity() { return minQuantity; }
+    public void setMinQuantity(Integer minQuantity) { this.minQuantity = minQuantity; }
+
+    public Integer getMaxQuantity() { return maxQuantity; }
+    public void setMaxQuantity(Integer maxQuantity) { this.maxQuantity = maxQuantity; }
+
+    public List<Long> getIds() { return ids; }
+    public void setIds(List<Long> ids) { this.ids = ids; }
+
+    public boolean hasFilter() {
+        return categoryId != null || category != null || minPrice != null || maxPrice != null
+                || minQuantity != null || maxQuantity != null || ids != null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.onlinestore.dto;
+
+import com.onlinestore.model.Product;
+import java.util.List;
+
+// Страница каталога при keyset-пагинации
+public class ProductPageDto {
+    private List<Product> products;
+    private String nextCursor;
+    private boolean hasMore;
+
+    // Конструкторы
+    public ProductPageDto() {}
+
+    public ProductPageDto(List<Product> products, String nextCursor, boolean hasMore) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    // Геттеры и сеттеры
+    public List<Product> getProducts() { return products; }
+    public void setProducts(List<Product> products) { this.products = products; }
+
+    // null, если это последняя страница
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
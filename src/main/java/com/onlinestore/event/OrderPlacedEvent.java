@@ -0,0 +1,58 @@
+package com.onlinestore.event;
+
+import com.onlinestore.model.Order;
+import com.onlinestore.model.OrderItem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Событие о новых заказах в статусе PENDING, публикуется после сохранения заказов
+public class OrderPlacedEvent {
+
+    private final List<Long> orderIds;
+    private final List<LocalDateTime> createdAt;
+    private final Map<Long, Long> soldQuantities;
+
+    private OrderPlacedEvent(List<Long> orderIds, List<LocalDateTime> createdAt, Map<Long, Long> soldQuantities) {
+        this.orderIds = orderIds;
+        this.createdAt = createdAt;
+        this.soldQuantities = soldQuantities;
+    }
+
+    public static OrderPlacedEvent of(Collection<Order> orders) {
+        List<Long> ids = new ArrayList<>(orders.size());
+        List<LocalDateTime> created = new ArrayList<>(orders.size());
+        Map<Long, Long> sold = new HashMap<>();
+        for (Order order : orders) {
+            ids.add(order.getId());
+            created.add(order.getCreatedAt());
+            for (OrderItem item : order.getItems()) {
+                sold.merge(item.getProduct().getId(), item.getQuantity().longValue(), Long::sum);
+            }
+        }
+        return new OrderPlacedEvent(Collections.unmodifiableList(ids), Collections.unmodifiableList(created),
+                Collections.unmodifiableMap(sold));
+    }
+
+    public static OrderPlacedEvent of(Order order) {
+        return of(Collections.singletonList(order));
+    }
+
+    public List<Long> getOrderIds() { return orderIds; }
+
+    // Время создания заказов, в порядке getOrderIds
+    public List<LocalDateTime> getCreatedAt() { return createdAt; }
+
+    // Проданное количество по id товара, суммарно по всем заказам события
+    public Map<Long, Long> getSoldQuantities() { return soldQuantities; }
+
+    @Override
+    public String toString() {
+        return "OrderPlacedEvent{orderIds=" + orderIds + "}";
+    }
+}
@@ -0,0 +1,64 @@
+package com.onlinestore.event;
+
+import com.onlinestore.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Событие об изменении каталога, публикуется ProductService после записи в БД
+public class ProductChangedEvent {
+
+    public enum Type {
+        SAVED,
+        DELETED,
+        // Массовое изменение в обход JPA (импорт): подписчики перечитывают каталог целиком
+        RELOADED
+    }
+
+    private final Type type;
+    private final List<Product> products;
+    private final List<Long> productIds;
+
+    private ProductChangedEvent(Type type, List<Product> products, List<Long> productIds) {
+        this.type = type;
+        this.products = products;
+        this.productIds = productIds;
+    }
+
+    public static ProductChangedEvent saved(Collection<Product> products) {
+        List<Long> ids = new ArrayList<>(products.size());
+        for (Product product : products) {
+            ids.add(product.getId());
+        }
+        return new ProductChangedEvent(Type.SAVED,
+                Collections.unmodifiableList(new ArrayList<>(products)),
+                Collections.unmodifiableList(ids));
+    }
+
+    public static ProductChangedEvent saved(Product product) {
+        return saved(Collections.singletonList(product));
+    }
+
+    public static ProductChangedEvent deleted(Collection<Long> productIds) {
+        return new ProductChangedEvent(Type.DELETED, Collections.emptyList(),
+                Collections.unmodifiableList(new ArrayList<>(productIds)));
+    }
+
+    public static ProductChangedEvent reloaded() {
+        return new ProductChangedEvent(Type.RELOADED, Collections.emptyList(), Collections.emptyList());
+    }
+
+    public Type getType() { return type; }
+
+    // Сохраненные товары (пусто для DELETED и RELOADED)
+    public List<Product> getProducts() { return products; }
+
+    public List<Long> getProductIds() { return productIds; }
+
+    @Override
+    public String toString() {
+        return "ProductChangedEvent{type=" + type + ", productIds=" + productIds + "}";
+    }
+}
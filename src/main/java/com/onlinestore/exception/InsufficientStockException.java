@@ -0,0 +1,29 @@
+package com.onlinestore.exception;
+
+// Остатка товара не хватает для резервирования (available == null - товара нет)
+public class InsufficientStockException extends RuntimeException {
+
+    private final Long productId;
+    private final String productName;
+    private final Integer available;
+    private final int requested;
+
+    public InsufficientStockException(Long productId, String productName, Integer available, int requested) {
+        super(available == null
+                ? "Product not found: " + productId
+                : "Not enough stock for product: " + productName);
+        this.productId = productId;
+        this.productName = productName;
+        this.available = available;
+        this.requested = requested;
+    }
+
+    public boolean isProductMissing() {
+        return available == null;
+    }
+
+    public Long getProductId() { return productId; }
+    public String getProductName() { return productName; }
+    public Integer getAvailable() { return available; }
+    public int getRequested() { return requested; }
+}
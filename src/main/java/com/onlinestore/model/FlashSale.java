@@ -0,0 +1,46 @@
+package com.onlinestore.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Товар в режиме flash-продажи: остаток на момент включения, время включения
+// и экземпляр приложения, в памяти которого живет счетчик
+@Entity
+@Table(name = "flash_sales")
+public class FlashSale {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "initial_quantity", nullable = false)
+    private Integer initialQuantity;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "owner")
+    private String owner;
+
+    public FlashSale() {
+    }
+
+    public FlashSale(Long productId, Integer initialQuantity, String owner) {
+        this.productId = productId;
+        this.initialQuantity = initialQuantity;
+        this.startedAt = LocalDateTime.now();
+        this.owner = owner;
+    }
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+
+    public Integer getInitialQuantity() { return initialQuantity; }
+    public void setInitialQuantity(Integer initialQuantity) { this.initialQuantity = initialQuantity; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+}
@@ -0,0 +1,66 @@
+package com.onlinestore.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Ответ, сохраненный по Idempotency-Key: повтор запроса с тем же ключом получает его же
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyRecord {
+
+    // status_code строки-маркера: запрос с этим ключом еще выполняется
+    public static final int IN_PROGRESS = 0;
+
+    @Id
+    @Column(name = "idempotency_key", length = 255)
+    private String key;
+
+    // SHA-256 тела запроса: тот же ключ с другим запросом - ошибка клиента
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "status_code", nullable = false)
+    private Integer statusCode;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String key, String requestHash, Integer statusCode, String responseBody,
+                             LocalDateTime expiresAt) {
+        this.key = key;
+        this.requestHash = requestHash;
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.createdAt = LocalDateTime.now();
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isInProgress() { return statusCode != null && statusCode == IN_PROGRESS; }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public String getRequestHash() { return requestHash; }
+    public void setRequestHash(String requestHash) { this.requestHash = requestHash; }
+
+    public Integer getStatusCode() { return statusCode; }
+    public void setStatusCode(Integer statusCode) { this.statusCode = statusCode; }
+
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
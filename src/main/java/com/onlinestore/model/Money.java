@@ -0,0 +1,156 @@
+package com.onlinestore.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.hibernate.annotations.Immutable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Денежная сумма в копейках (long): точная, неизменяемая, без BigDecimal и double в арифметике.
+// В БД - NUMERIC(10,2) через MoneyConverter, в JSON - число с двумя знаками после точки.
+// Перевод из BigDecimal/double - только на границах (запрос, JDBC); суммы по многим строкам
+// считаются в long через getMinorUnits() и оборачиваются в Money один раз.
+// @Immutable: Hibernate не копирует значение для dirty checking.
+@Immutable
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+
+    private static final long MINOR_PER_MAJOR = 100;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    // Больше двух знаков после точки - округление half-up
+    public static Money of(BigDecimal amount) {
+        return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    // Через десятичную запись double: 0.1 -> 10 копеек, а не 9.999...
+    public static Money of(double amount) {
+        return of(BigDecimal.valueOf(amount));
+    }
+
+    // NumberFormatException - не число
+    public static Money parse(String amount) {
+        return of(new BigDecimal(amount.trim()));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money times(long quantity) {
+        return ofMinor(Math.multiplyExact(minorUnits, quantity));
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Money && ((Money) o).minorUnits == minorUnits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    // "1234.50", "-0.05" - формат JSON и курсоров пагинации
+    @Override
+    public String toString() {
+        long major = Math.abs(minorUnits / MINOR_PER_MAJOR);
+        long minor = Math.abs(minorUnits % MINOR_PER_MAJOR);
+        StringBuilder text = new StringBuilder(24);
+        if (minorUnits < 0) {
+            text.append('-');
+        }
+        text.append(major).append('.');
+        if (minor < 10) {
+            text.append('0');
+        }
+        return text.append(minor).toString();
+    }
+
+    static final class Serializer extends StdSerializer<Money> {
+
+        Serializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(value.toString());
+        }
+    }
+
+    // Число или строка: 99.99, "99.99"
+    static final class Deserializer extends StdDeserializer<Money> {
+
+        Deserializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return ofMinor(Math.multiplyExact(parser.getLongValue(), MINOR_PER_MAJOR));
+            }
+            if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                return of(parser.getDecimalValue());
+            }
+            if (token == JsonToken.VALUE_STRING) {
+                try {
+                    return parse(parser.getText());
+                } catch (NumberFormatException | ArithmeticException e) {
+                    return (Money) context.handleWeirdStringValue(Money.class, parser.getText(), "not a money amount");
+                }
+            }
+            return (Money) context.handleUnexpectedToken(Money.class, parser);
+        }
+    }
+}
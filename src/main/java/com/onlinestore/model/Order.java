@@ -1,6 +1,7 @@
 package com.onlinestore.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.onlinestore.service.OrderStatusListener;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -8,10 +9,12 @@ import java.util.List;
 
 @Entity
 @Table(name = "orders")
+@EntityListeners(OrderStatusListener.class)
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -21,8 +24,8 @@ public class Order {
     @Column(name = "order_date", nullable = false)
     private LocalDateTime orderDate;
 
-    @Column(name = "total_amount", nullable = false)
-    private Double totalAmount;
+    @Column(name = "total_amount", nullable = false, precision = 10, scale = 2)
+    private Money totalAmount;
 
     @Column(length = 20)
     private String status = "PENDING";
@@ -36,6 +39,11 @@ public class Order {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Статус на момент загрузки или последней записи - для истории статусов
+    @JsonIgnore
+    @Transient
+    private String persistedStatus;
+
     // Связь с OrderItem
     @JsonIgnore
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, 
@@ -47,7 +55,7 @@ public class Order {
         this.orderDate = LocalDateTime.now();
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
-        this.totalAmount = 0.0;
+        this.totalAmount = Money.ZERO;
     }
 
     public Order(User user) {
@@ -85,11 +93,11 @@ public class Order {
         this.orderDate = orderDate;
     }
 
-    public Double getTotalAmount() {
+    public Money getTotalAmount() {
         return totalAmount;
     }
 
-    public void setTotalAmount(Double totalAmount) {
+    public void setTotalAmount(Money totalAmount) {
         this.totalAmount = totalAmount;
     }
 
@@ -101,6 +109,14 @@ public class Order {
         this.status = status;
     }
 
+    public String getPersistedStatus() {
+        return persistedStatus;
+    }
+
+    public void setPersistedStatus(String persistedStatus) {
+        this.persistedStatus = persistedStatus;
+    }
+
     public String getShippingAddress() {
         return shippingAddress;
     }
@@ -152,10 +168,13 @@ public class Order {
         recalculateTotalAmount();
     }
 
-    private void recalculateTotalAmount() {
-        this.totalAmount = items.stream()
-                .mapToDouble(item -> item.getPrice().doubleValue() * item.getQuantity())
-                .sum();
+    // Сумма по позициям; вызывать после изменения количества или цены позиции
+    public void recalculateTotalAmount() {
+        long total = 0;
+        for (OrderItem item : items) {
+            total = Math.addExact(total, Math.multiplyExact(item.getPrice().getMinorUnits(), item.getQuantity()));
+        }
+        this.totalAmount = Money.ofMinor(total);
     }
 
     public int getItemCount() {
@@ -232,7 +251,7 @@ public class Order {
             status = "PENDING";
         }
         if (totalAmount == null) {
-            totalAmount = 0.0;
+            totalAmount = Money.ZERO;
         }
     }
 
@@ -2,7 +2,6 @@ package com.onlinestore.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import javax.persistence.*;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
@@ -11,7 +10,8 @@ import java.util.Objects;
 public class OrderItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_id_seq", allocationSize = 50)
     private Long id;
 
     @JsonIgnore
@@ -27,7 +27,7 @@ public class OrderItem {
     private Integer quantity;
 
     @Column(name = "price", nullable = false, precision = 10, scale = 2)
-    private BigDecimal price;
+    private Money price;
 
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -46,11 +46,10 @@ public class OrderItem {
         this.order = order;
         this.product = product;
         this.quantity = quantity;
-        // Исправлено: конвертируем Double в BigDecimal
-        this.price = BigDecimal.valueOf(product.getPrice());
+        this.price = product.getPrice();
     }
 
-    public OrderItem(Order order, Product product, Integer quantity, BigDecimal price) {
+    public OrderItem(Order order, Product product, Integer quantity, Money price) {
         this();
         this.order = order;
         this.product = product;
@@ -60,8 +59,8 @@ public class OrderItem {
 
     // Вычисляемая сумма для позиции
     @Transient
-    public BigDecimal getSubtotal() {
-        return price.multiply(BigDecimal.valueOf(quantity));
+    public Money getSubtotal() {
+        return price.times(quantity);
     }
 
     // Геттеры и сеттеры
@@ -100,11 +99,11 @@ public class OrderItem {
         this.updatedAt = LocalDateTime.now();
     }
 
-    public BigDecimal getPrice() {
+    public Money getPrice() {
         return price;
     }
 
-    public void setPrice(BigDecimal price) {
+    public void setPrice(Money price) {
         this.price = price;
         this.updatedAt = LocalDateTime.now();
     }
@@ -0,0 +1,52 @@
+package com.onlinestore.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Переход статуса заказа. Строки пишет пачками OrderStatusHistoryService через JDBC,
+// сущность используется только для чтения истории
+@Entity
+@Table(name = "order_status_history")
+public class OrderStatusHistory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "old_status", length = 20)
+    private String oldStatus;
+
+    @Column(name = "new_status", nullable = false, length = 20)
+    private String newStatus;
+
+    // Пользователь, сменивший статус (null - система или анонимный запрос)
+    @Column(name = "changed_by")
+    private Long changedBy;
+
+    @Column(name = "changed_at")
+    private LocalDateTime changedAt;
+
+    public OrderStatusHistory() {
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+
+    public String getOldStatus() { return oldStatus; }
+    public void setOldStatus(String oldStatus) { this.oldStatus = oldStatus; }
+
+    public String getNewStatus() { return newStatus; }
+    public void setNewStatus(String newStatus) { this.newStatus = newStatus; }
+
+    public Long getChangedBy() { return changedBy; }
+    public void setChangedBy(Long changedBy) { this.changedBy = changedBy; }
+
+    public LocalDateTime getChangedAt() { return changedAt; }
+    public void setChangedAt(LocalDateTime changedAt) { this.changedAt = changedAt; }
+}
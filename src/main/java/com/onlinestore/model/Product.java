@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
 public class Product {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, length = 100)
@@ -17,12 +18,16 @@ public class Product {
     @Column(length = 500)
     private String description;
     
-    @Column(nullable = false)
-    private Double price;
+    @Column(nullable = false, precision = 10, scale = 2)
+    private Money price;
     
     @Column(nullable = false)
     private Integer quantity;
     
+    @Column(name = "is_active", nullable = false)
+    private Boolean isActive = true;
+    
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
     private LocalDateTime updatedAt;
@@ -30,13 +35,25 @@ public class Product {
     public Product() {
     }
     
-    public Product(String name, String description, Double price, Integer quantity) {
+    public Product(String name, String description, Money price, Integer quantity) {
         this.name = name;
         this.description = description;
         this.price = price;
         this.quantity = quantity;
     }
     
+    // Копия для кэша, чтобы изменения вызывающего кода не попадали в кэш
+    public Product(Product other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.description = other.description;
+        this.price = other.price;
+        this.quantity = other.quantity;
+        this.isActive = other.isActive;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+    
     // Геттеры и сеттеры
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -47,12 +64,15 @@ public class Product {
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
     
-    public Double getPrice() { return price; }
-    public void setPrice(Double price) { this.price = price; }
+    public Money getPrice() { return price; }
+    public void setPrice(Money price) { this.price = price; }
     
     public Integer getQuantity() { return quantity; }
     public void setQuantity(Integer quantity) { this.quantity = quantity; }
     
+    public Boolean getIsActive() { return isActive; }
+    public void setIsActive(Boolean isActive) { this.isActive = isActive; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -61,6 +81,9 @@ public class Product {
     
     @PrePersist
     protected void onCreate() {
+        if (isActive == null) {
+            isActive = true;
+        }
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
     }
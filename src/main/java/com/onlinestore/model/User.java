@@ -14,7 +14,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 public class User {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, length = 50)
@@ -0,0 +1,23 @@
+package com.onlinestore.repository;
+
+import com.onlinestore.model.Category;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CategoryRepository extends JpaRepository<Category, Long> {
+
+    Optional<Category> findByName(String name);
+
+    List<Category> findByParentId(Long parentId);
+
+    List<Category> findAllByOrderBySortOrderAsc();
+
+    // Все связи товар-категория одним запросом: [category_id, product_id]
+    @Query("SELECT c.id, p.id FROM Category c JOIN c.products p")
+    List<Object[]> findAllProductLinks();
+}
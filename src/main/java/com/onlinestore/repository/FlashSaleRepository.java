@@ -0,0 +1,31 @@
+package com.onlinestore.repository;
+
+import com.onlinestore.model.FlashSale;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FlashSaleRepository extends JpaRepository<FlashSale, Long> {
+
+    // Продано с начала flash-продажи: позиции неотмененных заказов, созданные после since
+    @Query("SELECT COALESCE(SUM(i.quantity), 0) FROM OrderItem i " +
+           "WHERE i.product.id = :productId AND i.createdAt >= :since AND i.order.status <> 'CANCELLED'")
+    long countSoldSince(@Param("productId") Long productId, @Param("since") LocalDateTime since);
+
+    @Query("SELECT f.productId FROM FlashSale f WHERE f.productId IN :productIds")
+    List<Long> findStartedProductIds(@Param("productIds") Collection<Long> productIds);
+
+    List<FlashSale> findByOwner(String owner);
+
+    // Забрать продажи без владельца (строки, созданные до появления колонки owner)
+    @Modifying
+    @Query("UPDATE FlashSale f SET f.owner = :owner WHERE f.owner IS NULL")
+    int claimUnowned(@Param("owner") String owner);
+}
@@ -0,0 +1,45 @@
+package com.onlinestore.repository;
+
+import com.onlinestore.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Захватить ключ маркером "выполняется" (PostgreSQL): 1 - захвачен, 0 - занят другим запросом.
+    // Просроченная строка (ответ или маркер упавшего экземпляра) захватывается заново
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, request_hash, status_code, created_at, expires_at) " +
+           "VALUES (:key, :requestHash, " + IdempotencyRecord.IN_PROGRESS + ", :now, :expiresAt) " +
+           "ON CONFLICT (idempotency_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, " +
+           "status_code = EXCLUDED.status_code, response_body = NULL, created_at = EXCLUDED.created_at, " +
+           "expires_at = EXCLUDED.expires_at WHERE idempotency_keys.expires_at < :now", nativeQuery = true)
+    int claim(@Param("key") String key, @Param("requestHash") String requestHash,
+              @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Записать ответ в захваченную строку; 0 - маркер истек и ключ захвачен заново
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :statusCode, r.responseBody = :responseBody, " +
+           "r.expiresAt = :expiresAt WHERE r.key = :key AND r.statusCode = " + IdempotencyRecord.IN_PROGRESS)
+    int complete(@Param("key") String key, @Param("statusCode") int statusCode,
+                 @Param("responseBody") String responseBody, @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Освободить ключ после 5xx - повтор выполнит запрос заново
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.key = :key AND r.statusCode = " + IdempotencyRecord.IN_PROGRESS)
+    int release(@Param("key") String key);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,13 +1,21 @@
 package com.onlinestore.repository;
 
+import com.onlinestore.model.Money;
 import com.onlinestore.model.Order;
 import com.onlinestore.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -29,6 +37,14 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Получить все заказы отсортированные по дате (новые сверху)
     List<Order> findAllByOrderByOrderDateDesc();
 
+    // То же курсором БД для потоковой выдачи, пользователь подгружается сразу (без N+1)
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.user ORDER BY o.orderDate DESC")
+    Stream<Order> streamAllByOrderByOrderDateDesc();
+
     // Найти заказы за период
     List<Order> findByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate);
 
@@ -42,7 +58,7 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     long countByStatus(String status);
 
     // Найти заказы с суммой больше указанной
-    List<Order> findByTotalAmountGreaterThan(Double amount);
+    List<Order> findByTotalAmountGreaterThan(Money amount);
 
     // Найти последние N заказов пользователя
     List<Order> findTop10ByUserIdOrderByOrderDateDesc(Long userId);
@@ -68,6 +84,12 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Проверить, есть ли у пользователя заказы
     boolean existsByUserId(Long userId);
 
+    // ============= СРОК РЕЗЕРВИРОВАНИЯ =============
+
+    // Id и время создания всех PENDING-заказов (восстановление сроков при старте)
+    @Query("SELECT o.id, o.createdAt FROM Order o WHERE o.status = 'PENDING'")
+    List<Object[]> findPendingCreatedAt();
+
     // ============= СТАТИСТИКА =============
     
     // Количество заказов за период
@@ -86,19 +108,19 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     
     // Общая выручка (сумма всех заказов)
     @Query("SELECT SUM(o.totalAmount) FROM Order o")
-    Double getTotalRevenue();
+    Money getTotalRevenue();
     
     // Выручка за период
     @Query("SELECT SUM(o.totalAmount) FROM Order o WHERE o.orderDate BETWEEN :start AND :end")
-    Double getRevenueBetweenDates(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    Money getRevenueBetweenDates(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     // Максимальная сумма заказа
     @Query("SELECT MAX(o.totalAmount) FROM Order o")
-    Double getMaxOrderAmount();
+    Money getMaxOrderAmount();
     
     // Минимальная сумма заказа
     @Query("SELECT MIN(o.totalAmount) FROM Order o")
-    Double getMinOrderAmount();
+    Money getMinOrderAmount();
     
     // Количество заказов по дням за последние 30 дней (ИСПРАВЛЕНО)
     @Query("SELECT CAST(o.orderDate AS date), COUNT(o), SUM(o.totalAmount) FROM Order o " +
@@ -132,7 +154,7 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Общая выручка за текущий месяц
     @Query("SELECT SUM(o.totalAmount) FROM Order o WHERE " +
            "o.orderDate >= :startOfMonth AND o.orderDate <= :endOfMonth")
-    Double getMonthlyRevenue(@Param("startOfMonth") LocalDateTime startOfMonth, 
+    Money getMonthlyRevenue(@Param("startOfMonth") LocalDateTime startOfMonth, 
                              @Param("endOfMonth") LocalDateTime endOfMonth);
     
     // Топ пользователей по сумме заказов
@@ -140,8 +162,8 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            "FROM Order o GROUP BY o.user.id, o.user.username ORDER BY total DESC")
     List<Object[]> getTopUsersBySpending();
     
-    // Топ товаров по продажам
-    @Query("SELECT i.product.id, i.product.name, SUM(i.quantity), SUM(i.price * i.quantity) " +
+    // Топ товаров по продажам; CAST - иначе Hibernate выводит тип произведения Money * Integer как Long
+    @Query("SELECT i.product.id, i.product.name, SUM(i.quantity), SUM(CAST(i.price AS big_decimal) * i.quantity) " +
            "FROM OrderItem i GROUP BY i.product.id, i.product.name ORDER BY SUM(i.quantity) DESC")
     List<Object[]> getTopProductsBySales();
     
@@ -0,0 +1,13 @@
+package com.onlinestore.repository;
+
+import com.onlinestore.model.OrderStatusHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderStatusHistoryRepository extends JpaRepository<OrderStatusHistory, Long> {
+
+    List<OrderStatusHistory> findByOrderIdOrderByChangedAtAscIdAsc(Long orderId);
+}
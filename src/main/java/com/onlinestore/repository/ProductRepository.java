@@ -1,13 +1,38 @@
 package com.onlinestore.repository;
 
+import com.onlinestore.model.Money;
 import com.onlinestore.model.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     
+    // Все товары курсором БД (fetch size 500) для потоковой выдачи; вызывать внутри транзакции
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p ORDER BY p.id")
+    Stream<Product> streamAll();
+    
     // Поиск по названию (частичное совпадение, без учета регистра)
     List<Product> findByNameContainingIgnoreCase(String name);
     
@@ -15,8 +40,28 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(
         String name, String description);
     
+    // Полнотекстовый поиск с ранжированием (PostgreSQL, колонка search_vector из V4)
+    @Query(value = "SELECT p.* FROM products p, " +
+           "(SELECT websearch_to_tsquery('russian', :query) || websearch_to_tsquery('simple', :query) AS q) t " +
+           "WHERE p.search_vector @@ t.q " +
+           "ORDER BY ts_rank(p.search_vector, t.q) DESC, p.id " +
+           "LIMIT :limit",
+           nativeQuery = true)
+    List<Product> fullTextSearch(@Param("query") String query, @Param("limit") int limit);
+    
+    // Порог похожести для оператора % (pg_trgm), действует до конца транзакции
+    @Query(value = "SELECT set_config('pg_trgm.similarity_threshold', :threshold, true)", nativeQuery = true)
+    String setSimilarityThreshold(@Param("threshold") String threshold);
+    
+    // Нечеткий поиск по названию (pg_trgm, GIN индекс из V5), самые похожие сверху
+    @Query(value = "SELECT p.* FROM products p WHERE p.name % :query " +
+           "ORDER BY similarity(p.name, :query) DESC, p.id " +
+           "LIMIT :limit",
+           nativeQuery = true)
+    List<Product> fuzzySearchByName(@Param("query") String query, @Param("limit") int limit);
+    
     // Поиск по цене
-    List<Product> findByPriceBetween(Double minPrice, Double maxPrice);
+    List<Product> findByPriceBetween(Money minPrice, Money maxPrice);
     
     // Товары с остатком больше 0 (в наличии)
     List<Product> findByQuantityGreaterThan(Integer quantity);
@@ -25,12 +70,83 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findAllByOrderByPriceAsc();
     List<Product> findAllByOrderByPriceDesc();
     
+    // Keyset-пагинация: первая страница и страница после курсора (last id / price / createdAt).
+    // Pageable используется только как LIMIT, без OFFSET и count-запроса
+    List<Product> findAllByOrderByIdAsc(Pageable limit);
+    List<Product> findAllByOrderByPriceAscIdAsc(Pageable limit);
+    List<Product> findAllByOrderByPriceDescIdDesc(Pageable limit);
+    List<Product> findAllByOrderByCreatedAtDescIdDesc(Pageable limit);
+    
+    @Query("SELECT p FROM Product p WHERE p.id > :id ORDER BY p.id ASC")
+    List<Product> findPageAfterId(@Param("id") Long id, Pageable limit);
+    
+    @Query("SELECT p FROM Product p WHERE p.price > :price OR (p.price = :price AND p.id > :id) " +
+           "ORDER BY p.price ASC, p.id ASC")
+    List<Product> findPageAfterPriceAsc(@Param("price") Money price, @Param("id") Long id, Pageable limit);
+    
+    @Query("SELECT p FROM Product p WHERE p.price < :price OR (p.price = :price AND p.id < :id) " +
+           "ORDER BY p.price DESC, p.id DESC")
+    List<Product> findPageAfterPriceDesc(@Param("price") Money price, @Param("id") Long id, Pageable limit);
+    
+    @Query("SELECT p FROM Product p WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Product> findPageAfterCreatedAtDesc(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                             Pageable limit);
+    
     // Поиск по количеству
     List<Product> findByQuantity(Integer quantity);
     
     // Товары с остатком меньше порога
     List<Product> findByQuantityLessThan(Integer threshold);
     
-    // Поиск по категории (если добавите поле category)
-    // List<Product> findByCategory(String category);
+    long countByQuantityLessThan(Integer threshold);
+    
+    // Статистика каталога одним проходом: [count, sum(price) - Money, sum(price*quantity) - BigDecimal,
+    // sum(quantity), в наличии, нет в наличии, остаток меньше порога].
+    // CAST - иначе Hibernate выводит тип произведения Money * Integer как Long и отбрасывает копейки
+    @Query("SELECT COUNT(p), COALESCE(SUM(p.price), 0), COALESCE(SUM(CAST(p.price AS big_decimal) * p.quantity), 0), " +
+           "COALESCE(SUM(p.quantity), 0), " +
+           "COALESCE(SUM(CASE WHEN p.quantity > 0 THEN 1 ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN p.quantity > 0 THEN 0 ELSE 1 END), 0), " +
+           "COALESCE(SUM(CASE WHEN p.quantity < :threshold THEN 1 ELSE 0 END), 0) FROM Product p")
+    List<Object[]> aggregateStatistics(@Param("threshold") Integer lowStockThreshold);
+    
+    // Строки [id, price, quantity] для построения ProductStatistics
+    @Query("SELECT p.id, p.price, p.quantity FROM Product p")
+    List<Object[]> findAllStockRows();
+    
+    // Атомарное списание остатка: 1 - списано, 0 - остатка не хватает или товара нет.
+    // Проверка и списание в одном UPDATE, без чтения остатка в Java.
+    // Контекст персистентности очищается, чтобы не остались устаревшие quantity
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity - :quantity, p.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE p.id = :id AND p.quantity >= :quantity")
+    int reserveStock(@Param("id") Long id, @Param("quantity") int quantity);
+    
+    // Товары заказа одним запросом с блокировкой строк в порядке id
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<Product> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+    
+    // Товар с блокировкой строки - для изменений из админки поверх текущего остатка
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+    
+    // Возврат остатка на склад
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity + :quantity, p.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE p.id = :id")
+    int releaseStock(@Param("id") Long id, @Param("quantity") int quantity);
+    
+    // Товары категории по названию вместе с подкатегориями, по возрастанию id
+    // (UNION, а не UNION ALL: цикл в parent_id не зацикливает рекурсию)
+    @Query(value = "WITH RECURSIVE tree(id) AS (" +
+           "SELECT id FROM categories WHERE name = :category " +
+           "UNION SELECT c.id FROM categories c JOIN tree t ON c.parent_id = t.id) " +
+           "SELECT p.* FROM products p WHERE p.id IN (" +
+           "SELECT pc.product_id FROM product_categories pc JOIN tree t ON pc.category_id = t.id) " +
+           "ORDER BY p.id",
+           nativeQuery = true)
+    List<Product> findByCategoryTree(@Param("category") String category);
 }
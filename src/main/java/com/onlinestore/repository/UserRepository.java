@@ -4,12 +4,19 @@ import com.onlinestore.model.User;
 import com.onlinestore.model.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -70,6 +77,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.lastLogin < :date OR u.lastLogin IS NULL")
     List<User> findInactiveUsers(@Param("date") LocalDateTime date);
     
+    // ============= ПОТОКОВАЯ ВЫДАЧА =============
+    
+    // Все пользователи курсором БД; вызывать внутри транзакции
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT u FROM User u ORDER BY u.id")
+    Stream<User> streamAll();
+    
     // ============= СТАТИСТИКА =============
     
     @Query("SELECT u.role, COUNT(u) FROM User u GROUP BY u.role")
@@ -0,0 +1,22 @@
+package com.onlinestore.search;
+
+// Фильтры каталога; null - фильтр не задан
+public class FacetQuery {
+
+    private final Long categoryId;
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final Boolean inStock;
+
+    public FacetQuery(Long categoryId, Double minPrice, Double maxPrice, Boolean inStock) {
+        this.categoryId = categoryId;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.inStock = inStock;
+    }
+
+    public Long getCategoryId() { return categoryId; }
+    public Double getMinPrice() { return minPrice; }
+    public Double getMaxPrice() { return maxPrice; }
+    public Boolean getInStock() { return inStock; }
+}
@@ -0,0 +1,66 @@
+package com.onlinestore.search;
+
+import java.util.List;
+
+// Результат запроса к каталогу: id найденных товаров и счетчики фасетов по ним
+public class FacetResult {
+
+    private final List<Long> productIds;
+    private final List<CategoryCount> categories;
+    private final List<PriceBucket> priceBuckets;
+    private final int inStock;
+    private final int outOfStock;
+
+    public FacetResult(List<Long> productIds, List<CategoryCount> categories,
+                       List<PriceBucket> priceBuckets, int inStock, int outOfStock) {
+        this.productIds = productIds;
+        this.categories = categories;
+        this.priceBuckets = priceBuckets;
+        this.inStock = inStock;
+        this.outOfStock = outOfStock;
+    }
+
+    public List<Long> getProductIds() { return productIds; }
+
+    // Количество товаров по категориям (с учетом подкатегорий)
+    public List<CategoryCount> getCategories() { return categories; }
+
+    public List<PriceBucket> getPriceBuckets() { return priceBuckets; }
+
+    public int getInStock() { return inStock; }
+
+    public int getOutOfStock() { return outOfStock; }
+
+    // Ценовой диапазон [from, to); to == null - без верхней границы
+    public static class PriceBucket {
+        private final Double from;
+        private final Double to;
+        private final int count;
+
+        public PriceBucket(Double from, Double to, int count) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        public Double getFrom() { return from; }
+        public Double getTo() { return to; }
+        public int getCount() { return count; }
+    }
+
+    public static class CategoryCount {
+        private final Long id;
+        private final String name;
+        private final int count;
+
+        public CategoryCount(Long id, String name, int count) {
+            this.id = id;
+            this.name = name;
+            this.count = count;
+        }
+
+        public Long getId() { return id; }
+        public String getName() { return name; }
+        public int getCount() { return count; }
+    }
+}
@@ -0,0 +1,290 @@
+package com.onlinestore.search;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Category;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.CategoryRepository;
+import com.onlinestore.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Фасетный индекс каталога. Каждому товару присвоен порядковый номер (ordinal),
+// для каждой категории хранится BitSet ее товаров (с учетом подкатегорий),
+// цена и остаток - в массивах по ordinal. Запрос = AND битсетов + один проход
+// по найденным ordinal, в котором считаются все фасеты сразу.
+@Component
+public class ProductFacetIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductFacetIndex.class);
+
+    private static final long[] NO_CATEGORIES = new long[0];
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    // Границы ценовых диапазонов
+    @Value("${app.catalog.price-buckets:1000,5000,20000,50000}")
+    private double[] priceBounds = {1000, 5000, 20000, 50000};
+
+    // Те же границы в копейках; считаются при load
+    private long[] boundsMinor = new long[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> ordinalById = new HashMap<>();
+    private long[] ids = new long[0];
+    // Цены в копейках
+    private long[] prices = new long[0];
+    private int[] quantities = new int[0];
+    private long[][] categoriesOf = new long[0][];
+    private int size;
+    private final BitSet live = new BitSet();
+
+    private final Map<Long, BitSet> productsByCategory = new HashMap<>();
+    private final Map<Long, Long> parentByCategory = new HashMap<>();
+    private final Map<String, Long> categoryIdByName = new HashMap<>();
+    private final Map<Long, String> categoryNameById = new HashMap<>();
+
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            List<Category> categories = categoryRepository.findAll();
+            List<Object[]> links = categoryRepository.findAllProductLinks();
+            List<Product> products = productRepository.findAll(Sort.by("id"));
+            load(categories, links, products);
+            logger.info("Facet index built: {} products, {} categories", products.size(), categories.size());
+        } catch (Exception e) {
+            ready = false;
+            logger.error("Failed to build facet index: ", e);
+        }
+    }
+
+    // links - пары [category_id, product_id]
+    public void load(List<Category> categories, List<Object[]> links, List<Product> products) {
+        lock.writeLock().lock();
+        try {
+            ordinalById.clear();
+            size = 0;
+            live.clear();
+            productsByCategory.clear();
+            parentByCategory.clear();
+            categoryIdByName.clear();
+            categoryNameById.clear();
+            ids = new long[Math.max(16, products.size())];
+            prices = new long[ids.length];
+            boundsMinor = new long[priceBounds.length];
+            for (int i = 0; i < priceBounds.length; i++) {
+                boundsMinor[i] = Money.of(priceBounds[i]).getMinorUnits();
+            }
+            quantities = new int[ids.length];
+            categoriesOf = new long[ids.length][];
+
+            for (Category category : categories) {
+                parentByCategory.put(category.getId(), category.getParentId());
+                categoryIdByName.put(category.getName(), category.getId());
+                categoryNameById.put(category.getId(), category.getName());
+            }
+            products.forEach(this::upsert);
+
+            Map<Long, Set<Long>> directByProduct = new HashMap<>();
+            for (Object[] link : links) {
+                directByProduct.computeIfAbsent((Long) link[1], id -> new LinkedHashSet<>()).add((Long) link[0]);
+            }
+            directByProduct.forEach((productId, direct) -> {
+                Integer ordinal = ordinalById.get(productId);
+                if (ordinal == null) {
+                    return;
+                }
+                long[] expanded = withAncestors(direct);
+                categoriesOf[ordinal] = expanded;
+                for (long categoryId : expanded) {
+                    productsByCategory.computeIfAbsent(categoryId, id -> new BitSet()).set(ordinal);
+                }
+            });
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.RELOADED) {
+            rebuild();
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                event.getProductIds().forEach(this::remove);
+            } else {
+                event.getProducts().forEach(this::upsert);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Long findCategoryId(String name) {
+        lock.readLock().lock();
+        try {
+            return categoryIdByName.get(name);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public FacetResult search(FacetQuery query) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) live.clone();
+            if (query.getCategoryId() != null) {
+                BitSet category = productsByCategory.get(query.getCategoryId());
+                if (category == null) {
+                    matches.clear();
+                } else {
+                    matches.and(category);
+                }
+            }
+
+            long min = query.getMinPrice() != null ? Money.of(query.getMinPrice()).getMinorUnits() : Long.MIN_VALUE;
+            long max = query.getMaxPrice() != null ? Money.of(query.getMaxPrice()).getMinorUnits() : Long.MAX_VALUE;
+            Boolean inStockFilter = query.getInStock();
+
+            List<Long> found = new ArrayList<>(matches.cardinality());
+            Map<Long, Integer> categoryCounts = new HashMap<>();
+            int[] bucketCounts = new int[priceBounds.length + 1];
+            int inStock = 0;
+            int outOfStock = 0;
+
+            for (int ord = matches.nextSetBit(0); ord >= 0; ord = matches.nextSetBit(ord + 1)) {
+                long price = prices[ord];
+                boolean available = quantities[ord] > 0;
+                if (price < min || price > max
+                        || (inStockFilter != null && inStockFilter != available)) {
+                    continue;
+                }
+                found.add(ids[ord]);
+                bucketCounts[bucketOf(price)]++;
+                if (available) {
+                    inStock++;
+                } else {
+                    outOfStock++;
+                }
+                long[] categories = categoriesOf[ord];
+                if (categories != null) {
+                    for (long categoryId : categories) {
+                        categoryCounts.merge(categoryId, 1, Integer::sum);
+                    }
+                }
+            }
+            Collections.sort(found);
+
+            List<FacetResult.CategoryCount> categoryFacet = new ArrayList<>(categoryCounts.size());
+            categoryCounts.forEach((categoryId, count) -> categoryFacet.add(
+                    new FacetResult.CategoryCount(categoryId, categoryNameById.get(categoryId), count)));
+            categoryFacet.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+
+            List<FacetResult.PriceBucket> buckets = new ArrayList<>(bucketCounts.length);
+            for (int i = 0; i < bucketCounts.length; i++) {
+                Double from = i == 0 ? 0.0 : priceBounds[i - 1];
+                Double to = i < priceBounds.length ? priceBounds[i] : null;
+                buckets.add(new FacetResult.PriceBucket(from, to, bucketCounts[i]));
+            }
+            return new FacetResult(found, categoryFacet, buckets, inStock, outOfStock);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int bucketOf(long price) {
+        int i = Arrays.binarySearch(boundsMinor, price);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private void upsert(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        Integer ordinal = ordinalById.get(product.getId());
+        if (ordinal == null) {
+            ensureCapacity(size + 1);
+            ordinal = size++;
+            ordinalById.put(product.getId(), ordinal);
+            ids[ordinal] = product.getId();
+            categoriesOf[ordinal] = NO_CATEGORIES;
+        }
+        prices[ordinal] = product.getPrice() != null ? product.getPrice().getMinorUnits() : 0;
+        quantities[ordinal] = product.getQuantity() != null ? product.getQuantity() : 0;
+        live.set(ordinal);
+    }
+
+    // Ordinal удаленного товара не переиспользуется до следующего rebuild
+    private void remove(Long productId) {
+        Integer ordinal = ordinalById.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        live.clear(ordinal);
+        for (long categoryId : categoriesOf[ordinal]) {
+            BitSet bits = productsByCategory.get(categoryId);
+            if (bits != null) {
+                bits.clear(ordinal);
+            }
+        }
+        categoriesOf[ordinal] = NO_CATEGORIES;
+    }
+
+    private long[] withAncestors(Collection<Long> direct) {
+        Set<Long> result = new LinkedHashSet<>();
+        for (Long categoryId : direct) {
+            Long current = categoryId;
+            // result.add == false - предок уже учтен (или цикл в parent_id)
+            while (current != null && result.add(current)) {
+                current = parentByCategory.get(current);
+            }
+        }
+        return result.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newLength);
+        prices = Arrays.copyOf(prices, newLength);
+        quantities = Arrays.copyOf(quantities, newLength);
+        categoriesOf = Arrays.copyOf(categoriesOf, newLength);
+    }
+}
@@ -0,0 +1,166 @@
+package com.onlinestore.search;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Инвертированный индекс по названию и описанию товаров: терм -> id товаров.
+// Строится при старте и обновляется по ProductChangedEvent.
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    // Отсортированный словарь нужен для поиска по префиксу последнего слова запроса
+    private final ConcurrentSkipListMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+
+    // Термы каждого товара, чтобы убрать старые термы при обновлении
+    private final Map<Long, Set<String>> termsByProduct = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            synchronized (this) {
+                postings.clear();
+                termsByProduct.clear();
+                productRepository.findAll().forEach(this::addProduct);
+                ready = true;
+            }
+            logger.info("Search index built: {} products, {} terms", termsByProduct.size(), postings.size());
+        } catch (Exception e) {
+            ready = false;
+            logger.error("Failed to build search index, falling back to database search: ", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.RELOADED) {
+            rebuild();
+        } else if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            removeAll(event.getProductIds());
+        } else {
+            indexAll(event.getProducts());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized void indexAll(Collection<Product> products) {
+        products.forEach(this::addProduct);
+    }
+
+    public synchronized void removeAll(Collection<Long> productIds) {
+        productIds.forEach(this::removeProduct);
+    }
+
+    // Id товаров, содержащих все слова запроса; последнее слово ищется как префикс
+    public List<Long> search(String query) {
+        List<String> terms = new ArrayList<>(SearchTokenizer.tokenize(query));
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Set<Long>> lists = new ArrayList<>(terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            boolean last = i == terms.size() - 1;
+            Set<Long> posting = last ? prefixPosting(terms.get(i)) : postings.get(terms.get(i));
+            if (posting == null || posting.isEmpty()) {
+                return Collections.emptyList();
+            }
+            lists.add(posting);
+        }
+
+        // Пересечение начинаем с самого короткого списка
+        lists.sort(Comparator.comparingInt(Set::size));
+        List<Long> result = new ArrayList<>();
+        candidates:
+        for (Long id : lists.get(0)) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(id)) {
+                    continue candidates;
+                }
+            }
+            result.add(id);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public int size() {
+        return termsByProduct.size();
+    }
+
+    private Set<Long> prefixPosting(String prefix) {
+        Map<String, Set<Long>> range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        Set<Long> union = null;
+        boolean copied = false;
+        for (Set<Long> ids : range.values()) {
+            if (union == null) {
+                union = ids;
+            } else {
+                if (!copied) {
+                    union = new HashSet<>(union);
+                    copied = true;
+                }
+                union.addAll(ids);
+            }
+        }
+        return union;
+    }
+
+    private void addProduct(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        removeProduct(product.getId());
+
+        Set<String> terms = SearchTokenizer.tokenize(product.getName());
+        terms.addAll(SearchTokenizer.tokenize(product.getDescription()));
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(product.getId());
+        }
+        termsByProduct.put(product.getId(), terms);
+    }
+
+    private void removeProduct(Long productId) {
+        Set<String> terms = termsByProduct.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Set<Long> ids = postings.get(term);
+            if (ids != null) {
+                ids.remove(productId);
+                if (ids.isEmpty()) {
+                    postings.remove(term, ids);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.onlinestore.search;
+
+import com.onlinestore.event.OrderPlacedEvent;
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.OrderRepository;
+import com.onlinestore.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Префиксный индекс названий товаров для автодополнения.
+// Trie, в каждом узле которого хранятся TOP_K лучших по продажам товаров поддерева с разными названиями,
+// поэтому ответ на запрос - это спуск по префиксу без обхода поддерева.
+// Веса читаются из БД при полной перестройке и дальше растут по событиям о новых заказах.
+// Дети узла хранятся в отсортированных массивах, а не в HashMap, чтобы trie был компактным.
+@Component
+public class ProductSuggestIndex {
+
+    public static final int TOP_K = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSuggestIndex.class);
+
+    private static final Comparator<Entry> BY_RANK = Comparator
+            .comparingLong((Entry e) -> e.weight).reversed()
+            .thenComparing(e -> e.name)
+            .thenComparingLong(e -> e.id);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, Long> weights = new HashMap<>();
+    private Node root = new Node();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            Map<Long, Long> sales = new HashMap<>();
+            for (Object[] row : orderRepository.getTopProductsBySales()) {
+                sales.put((Long) row[0], ((Number) row[2]).longValue());
+            }
+            List<Product> products = productRepository.findAll();
+
+            lock.writeLock().lock();
+            try {
+                root = new Node();
+                entries.clear();
+                weights.clear();
+                weights.putAll(sales);
+                products.forEach(this::put);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Suggest index built: {} products", products.size());
+        } catch (Exception e) {
+            logger.error("Failed to build suggest index: ", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.RELOADED) {
+            rebuild();
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                event.getProductIds().forEach(this::remove);
+            } else {
+                event.getProducts().forEach(this::put);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Продажи новых заказов поднимают вес товаров без перестройки всего индекса
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.getSoldQuantities().forEach((productId, quantity) -> {
+                weights.merge(productId, quantity, Long::sum);
+                Entry entry = entries.get(productId);
+                if (entry != null) {
+                    put(entry.id, entry.name);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Названия лучших по продажам товаров, начинающихся с prefix
+    public List<String> suggest(String prefix) {
+        String key = SearchTokenizer.normalize(prefix).trim();
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return Collections.emptyList();
+            }
+            List<String> names = new ArrayList<>(node.top.length);
+            for (Entry entry : node.top) {
+                names.add(entry.name);
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Добавить/обновить товары с заданными весами (продажами)
+    public void putAll(List<Product> products, Map<Long, Long> salesByProductId) {
+        lock.writeLock().lock();
+        try {
+            weights.putAll(salesByProductId);
+            products.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Product product) {
+        if (product.getId() == null || product.getName() == null) {
+            return;
+        }
+        put(product.getId(), product.getName());
+    }
+
+    private void put(long productId, String name) {
+        remove(productId);
+
+        String key = SearchTokenizer.normalize(name).trim();
+        if (key.isEmpty()) {
+            return;
+        }
+        Entry entry = new Entry(productId, name, key, weights.getOrDefault(productId, 0L));
+        entries.put(entry.id, entry);
+
+        Node node = root;
+        node.offer(entry);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+            node.offer(entry);
+        }
+        node.ends = append(node.ends, entry);
+    }
+
+    private void remove(Long productId) {
+        Entry entry = entries.remove(productId);
+        if (entry == null) {
+            return;
+        }
+        Node[] path = new Node[entry.key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < entry.key.length(); i++) {
+            path[i + 1] = path[i].child(entry.key.charAt(i));
+        }
+        Node last = path[path.length - 1];
+        last.ends = without(last.ends, entry);
+
+        // Снизу вверх: пересчитываем top там, где он содержал удаленный товар,
+        // и убираем опустевшие узлы
+        for (int i = path.length - 1; i >= 0; i--) {
+            Node node = path[i];
+            if (i > 0 && node.ends.length == 0 && node.keys.length == 0) {
+                path[i - 1].removeChild(entry.key.charAt(i - 1));
+                continue;
+            }
+            if (node.contains(entry)) {
+                node.recomputeTop();
+            }
+        }
+    }
+
+    private static Entry[] append(Entry[] array, Entry entry) {
+        Entry[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = entry;
+        return result;
+    }
+
+    private static Entry[] without(Entry[] array, Entry entry) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == entry) {
+                Entry[] result = new Entry[array.length - 1];
+                System.arraycopy(array, 0, result, 0, i);
+                System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+                return result;
+            }
+        }
+        return array;
+    }
+
+    private static final class Entry {
+        final long id;
+        final String name;
+        final String key;
+        final long weight;
+
+        Entry(long id, String name, String key, long weight) {
+            this.id = id;
+            this.name = name;
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        // Товары, название которых заканчивается в этом узле
+        Entry[] ends = NO_ENTRIES;
+        // Лучшие TOP_K товаров поддерева, по убыванию веса; от каждого названия - один лучший товар
+        Entry[] top = NO_ENTRIES;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = c;
+            Node node = new Node();
+            newChildren[at] = node;
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        boolean contains(Entry entry) {
+            for (Entry e : top) {
+                if (e == entry) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void offer(Entry entry) {
+            for (int i = 0; i < top.length; i++) {
+                if (top[i].name.equals(entry.name)) {
+                    if (BY_RANK.compare(entry, top[i]) < 0) {
+                        Entry[] replaced = top.clone();
+                        replaced[i] = entry;
+                        Arrays.sort(replaced, BY_RANK);
+                        top = replaced;
+                    }
+                    return;
+                }
+            }
+            if (top.length == TOP_K && BY_RANK.compare(entry, top[TOP_K - 1]) >= 0) {
+                return;
+            }
+            Entry[] merged = append(top, entry);
+            Arrays.sort(merged, BY_RANK);
+            top = merged.length > TOP_K ? Arrays.copyOf(merged, TOP_K) : merged;
+        }
+
+        void recomputeTop() {
+            List<Entry> candidates = new ArrayList<>(Arrays.asList(ends));
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(BY_RANK);
+            List<Entry> best = new ArrayList<>(TOP_K);
+            Set<String> names = new HashSet<>();
+            for (Entry candidate : candidates) {
+                if (best.size() == TOP_K) {
+                    break;
+                }
+                if (names.add(candidate.name)) {
+                    best.add(candidate);
+                }
+            }
+            top = best.toArray(NO_ENTRIES);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.onlinestore.search;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Нормализация и разбиение текста на термы для поисковых индексов
+public final class SearchTokenizer {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchTokenizer() {
+    }
+
+    // Нижний регистр, ё -> е
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    // Уникальные термы в порядке появления
+    public static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return tokens;
+        }
+        for (String token : NON_WORD.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
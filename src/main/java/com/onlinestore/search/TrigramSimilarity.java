@@ -0,0 +1,41 @@
+package com.onlinestore.search;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Похожесть строк по триграммам, по тем же правилам что similarity() из pg_trgm:
+// каждое слово дополняется двумя пробелами слева и одним справа.
+// Используется там, где pg_trgm недоступен (H2 в тестах).
+public final class TrigramSimilarity {
+
+    private TrigramSimilarity() {
+    }
+
+    public static Set<String> trigrams(String text) {
+        Set<String> result = new HashSet<>();
+        for (String word : SearchTokenizer.tokenize(text)) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                result.add(padded.substring(i, i + 3));
+            }
+        }
+        return result;
+    }
+
+    public static double similarity(String a, String b) {
+        return similarity(trigrams(a), trigrams(b));
+    }
+
+    public static double similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0.0;
+        }
+        int common = 0;
+        for (String trigram : a) {
+            if (b.contains(trigram)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+}
@@ -0,0 +1,214 @@
+package com.onlinestore.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.onlinestore.dto.OrderRequest;
+import com.onlinestore.exception.InsufficientStockException;
+import com.onlinestore.model.Order;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+// Асинхронный прием заказов: запрос получает id приема и ставится в ограниченную
+// очередь, клиент сразу получает 202 и опрашивает статус. Пул воркеров сохраняет
+// заказы через OrderService.placeOrder. Переполненная очередь - RejectedExecutionException
+// (в контроллере 429). Статусы живут в памяти экземпляра app.orders.async.status-ttl-minutes.
+// При остановке очередь дорабатывается до app.orders.async.shutdown-timeout-ms;
+// не успевшие заказы получают статус FAILED, а не пропадают молча.
+//
+// Id заказа заранее не выдается: id берутся из последовательности пулом Hibernate
+// (allocationSize 50), и отдельный nextval мимо пула привел бы к пересечению id.
+// Клиент видит id заказа в статусе после CREATED.
+@Service
+public class AsyncOrderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncOrderService.class);
+
+    public enum State { QUEUED, PROCESSING, CREATED, REJECTED, FAILED }
+
+    @Autowired
+    private OrderService orderService;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Cache<String, Status> statuses;
+
+    // Сколько при остановке ждать обработки уже принятых заказов
+    @Value("${app.orders.async.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs = 10000;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // Задержка от приема до начала обработки (ожидание в очереди), мс
+    private final AtomicLong lastQueueLagMs = new AtomicLong();
+    private final LongAccumulator maxQueueLagMs = new LongAccumulator(Math::max, 0);
+    private final AtomicLong totalQueueLagMs = new AtomicLong();
+    // Полное время от приема до результата, мс
+    private final AtomicLong lastCompletionLagMs = new AtomicLong();
+    private final LongAccumulator maxCompletionLagMs = new LongAccumulator(Math::max, 0);
+
+    public AsyncOrderService(@Value("${app.orders.async.workers:4}") int workers,
+                             @Value("${app.orders.async.queue-capacity:1000}") int queueCapacity,
+                             @Value("${app.orders.async.status-ttl-minutes:60}") long statusTtlMinutes) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "order-async-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.statuses = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(statusTtlMinutes))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Runnable> dropped = executor.shutdownNow();
+        for (Runnable task : dropped) {
+            Status status = ((Task) task).status;
+            status.update(State.FAILED, null, "Order was not processed: service is shutting down");
+            failed.incrementAndGet();
+        }
+        if (!dropped.isEmpty()) {
+            logger.warn("Async order service stopped with {} unprocessed orders", dropped.size());
+        }
+    }
+
+    // Принять заказ в очередь; RejectedExecutionException - очередь заполнена
+    public Status accept(OrderRequest request) {
+        Status status = new Status(UUID.randomUUID().toString());
+        statuses.put(status.getRequestId(), status);
+        try {
+            executor.execute(new Task(request, status));
+        } catch (RejectedExecutionException e) {
+            statuses.invalidate(status.getRequestId());
+            throttled.incrementAndGet();
+            throw e;
+        }
+        accepted.incrementAndGet();
+        return status;
+    }
+
+    public Status getStatus(String requestId) {
+        return statuses.getIfPresent(requestId);
+    }
+
+    public Map<String, Object> getMetrics() {
+        long started = created.get() + rejected.get() + failed.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", executor.getQueue().size());
+        metrics.put("queueRemainingCapacity", executor.getQueue().remainingCapacity());
+        metrics.put("activeWorkers", executor.getActiveCount());
+        metrics.put("workers", executor.getMaximumPoolSize());
+        metrics.put("accepted", accepted.get());
+        metrics.put("throttled", throttled.get());
+        metrics.put("created", created.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("failed", failed.get());
+        metrics.put("lastQueueLagMs", lastQueueLagMs.get());
+        metrics.put("maxQueueLagMs", maxQueueLagMs.get());
+        metrics.put("avgQueueLagMs", started > 0 ? totalQueueLagMs.get() / started : 0);
+        metrics.put("lastCompletionLagMs", lastCompletionLagMs.get());
+        metrics.put("maxCompletionLagMs", maxCompletionLagMs.get());
+        return metrics;
+    }
+
+    private void process(OrderRequest request, Status status) {
+        long queueLag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - status.acceptedNanos);
+        lastQueueLagMs.set(queueLag);
+        maxQueueLagMs.accumulate(queueLag);
+        totalQueueLagMs.addAndGet(queueLag);
+        status.update(State.PROCESSING, null, null);
+        try {
+            Order order = orderService.placeOrder(request);
+            status.update(State.CREATED, order.getId(), null);
+            created.incrementAndGet();
+        } catch (InsufficientStockException | IllegalArgumentException e) {
+            status.update(State.REJECTED, null, e.getMessage());
+            rejected.incrementAndGet();
+        } catch (Exception e) {
+            logger.error("Async order {} failed: ", status.getRequestId(), e);
+            status.update(State.FAILED, null, "Failed to create order: " + e.getMessage());
+            failed.incrementAndGet();
+        } finally {
+            long completionLag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - status.acceptedNanos);
+            lastCompletionLagMs.set(completionLag);
+            maxCompletionLagMs.accumulate(completionLag);
+        }
+    }
+
+    // Задача очереди; статус нужен, чтобы пометить заказ, не обработанный до остановки
+    private final class Task implements Runnable {
+        private final OrderRequest request;
+        private final Status status;
+
+        Task(OrderRequest request, Status status) {
+            this.request = request;
+            this.status = status;
+        }
+
+        @Override
+        public void run() {
+            process(request, status);
+        }
+    }
+
+    // Статус принятого заказа
+    public static final class Status {
+        private final String requestId;
+        private final LocalDateTime acceptedAt = LocalDateTime.now();
+        private final long acceptedNanos = System.nanoTime();
+        private volatile State state = State.QUEUED;
+        private volatile Long orderId;
+        private volatile String error;
+        private volatile LocalDateTime updatedAt = acceptedAt;
+
+        public Status(String requestId) {
+            this.requestId = requestId;
+        }
+
+        private void update(State state, Long orderId, String error) {
+            this.orderId = orderId;
+            this.error = error;
+            this.updatedAt = LocalDateTime.now();
+            this.state = state;
+        }
+
+        public String getRequestId() { return requestId; }
+        public State getState() { return state; }
+        public Long getOrderId() { return orderId; }
+        public String getError() { return error; }
+        public LocalDateTime getAcceptedAt() { return acceptedAt; }
+        public LocalDateTime getUpdatedAt() { return updatedAt; }
+    }
+}
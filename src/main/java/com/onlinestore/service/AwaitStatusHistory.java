@@ -0,0 +1,16 @@
+package com.onlinestore.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Граница ожидания истории статусов в режиме SYNC (см. OrderStatusHistorySyncAspect):
+// метод возвращает результат после записи переходов, закоммиченных внутри него.
+// Ставится только на внешние точки смены статуса заказа
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AwaitStatusHistory {
+}
@@ -0,0 +1,355 @@
+package com.onlinestore.service;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.FlashSale;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.FlashSaleRepository;
+import com.onlinestore.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Режим flash-продажи для горячих товаров. Остаток такого товара держится в памяти
+// в StripedStockCounter, резервирование не трогает строку products, а накопленные
+// изменения остатка раз в app.flash-sale.flush-interval-ms пишутся в БД одним batch UPDATE
+// (quantity = quantity + delta). Ручное изменение остатка во время продажи счетчик не видит.
+//
+// Строка flash_sales живет, пока режим включен. После аварийного рестарта остаток
+// пересчитывается по заказам: initial_quantity минус проданное с started_at,
+// поэтому потерянные в памяти незаписанные изменения не приводят к перепродаже.
+//
+// Счетчик живет в памяти одного экземпляра приложения - того, что включил продажу
+// (flash_sales.owner = app.instance-id). Остальные экземпляры находят строку flash_sales
+// под блокировкой товара (см. InventoryService) и отказывают в резервировании, а не продают
+// тот же остаток из строки products. app.instance-id должен сохраняться между рестартами:
+// после рестарта экземпляр подхватывает только свои продажи.
+@Service
+public class FlashSaleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlashSaleService.class);
+
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE products SET quantity = quantity + ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Число полос счетчика на товар
+    @Value("${app.flash-sale.stripes:16}")
+    private int stripeCount = 16;
+
+    // Сколько stop() ждет начатые резервирования, а запросы в окне закрытия - финальную запись остатка
+    @Value("${app.flash-sale.stop-timeout-ms:5000}")
+    private long stopTimeoutMs = 5000;
+
+    // Идентификатор экземпляра приложения, ведущего продажу; по умолчанию - имя хоста
+    @Value("${app.instance-id:}")
+    private String instanceId;
+
+    private final Map<Long, Sale> sales = new ConcurrentHashMap<>();
+
+    // Запись в отдельной транзакции: release вызывается и из afterCommit/afterCompletion,
+    // где соединение завершенной транзакции еще привязано к потоку
+    private TransactionTemplate requiresNew;
+
+    // Результат резервирования в памяти
+    public enum Take {
+        TAKEN,
+        // Не хватает остатка в счетчике
+        SHORT,
+        // Продажа не ведется этим экземпляром (или завершилась): резервировать нужно из строки products
+        CLOSED
+    }
+
+    @PostConstruct
+    public void init() {
+        requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        if (instanceId == null || instanceId.isBlank()) {
+            try {
+                instanceId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException("Cannot resolve host name, set app.instance-id", e);
+            }
+        }
+    }
+
+    // Восстановить продажи этого экземпляра, не завершенные до его остановки.
+    // Строки без владельца (созданные до появления owner) забирает первый поднявшийся экземпляр
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        try {
+            transactionTemplate.execute(status -> flashSaleRepository.claimUnowned(instanceId));
+            for (FlashSale flashSale : flashSaleRepository.findByOwner(instanceId)) {
+                int remaining = transactionTemplate.execute(status -> reconcile(flashSale));
+                sales.put(flashSale.getProductId(), new Sale(remaining, stripeCount));
+                logger.info("Flash sale resumed for product {}: {} in stock", flashSale.getProductId(), remaining);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to resume flash sales: ", e);
+        }
+    }
+
+    public boolean isActive(Long productId) {
+        return sales.containsKey(productId);
+    }
+
+    // Товары из productIds, для которых продажа включена на любом экземпляре.
+    // Вызывается под блокировкой строк products: start() держит ту же блокировку,
+    // поэтому ответ не устаревает до конца транзакции вызывающего
+    public Set<Long> findStarted(Collection<Long> productIds) {
+        return new HashSet<>(flashSaleRepository.findStartedProductIds(productIds));
+    }
+
+    // Остаток в памяти (null - товар не в режиме flash-продажи)
+    public Integer getAvailable(Long productId) {
+        Sale sale = sales.get(productId);
+        return sale != null ? sale.stock.available() : null;
+    }
+
+    public Map<Long, Integer> getActiveSales() {
+        Map<Long, Integer> result = new LinkedHashMap<>();
+        sales.forEach((productId, sale) -> result.put(productId, sale.stock.available()));
+        return result;
+    }
+
+    // Резервирование в памяти. Запрос, попавший в окно закрытия продажи, ждет финальной
+    // записи остатка и получает CLOSED - дальше резервирование идет из строки products
+    public Take tryReserve(Long productId, int quantity) {
+        while (true) {
+            Sale sale = sales.get(productId);
+            if (sale == null) {
+                return Take.CLOSED;
+            }
+            CountDownLatch closing;
+            sale.inFlight.increment();
+            try {
+                closing = sale.closing;
+                if (closing == null) {
+                    if (!sale.stock.tryTake(quantity)) {
+                        return Take.SHORT;
+                    }
+                    sale.pendingDelta.add(-quantity);
+                    return Take.TAKEN;
+                }
+            } finally {
+                sale.inFlight.decrement();
+            }
+            // Закрытие не уложилось в таймаут - отказ; закрытие отменено или завершено - следующий круг
+            if (!await(closing)) {
+                return Take.SHORT;
+            }
+        }
+    }
+
+    // Вернуть остаток: в счетчик, а если продажа завершается или завершена - в БД
+    public void release(Long productId, int quantity) {
+        Sale sale = sales.get(productId);
+        if (sale != null) {
+            sale.inFlight.increment();
+            try {
+                if (sale.closing == null) {
+                    sale.stock.put(quantity);
+                    sale.pendingDelta.add(quantity);
+                    return;
+                }
+            } finally {
+                sale.inFlight.decrement();
+            }
+        }
+        requiresNew.executeWithoutResult(status -> jdbcTemplate.update(APPLY_DELTA_SQL, quantity, productId));
+    }
+
+    // Включить режим: текущий остаток из БД переходит в счетчик.
+    // Продажа регистрируется до commit, пока строка товара заблокирована: резервирование
+    // из БД, дождавшееся этой блокировки, перепроверяет режим и уходит в счетчик
+    // (см. InventoryService), а не списывает уже перенесенный остаток второй раз
+    public int start(Long productId) {
+        if (sales.containsKey(productId)) {
+            throw new IllegalStateException("Flash sale already active for product: " + productId);
+        }
+        Sale[] started = new Sale[1];
+        int quantity;
+        try {
+            quantity = transactionTemplate.execute(status -> {
+                List<Integer> rows = jdbcTemplate.queryForList(
+                        "SELECT quantity FROM products WHERE id = ? FOR UPDATE", Integer.class, productId);
+                if (rows.isEmpty()) {
+                    throw new IllegalArgumentException("Product not found: " + productId);
+                }
+                if (flashSaleRepository.existsById(productId)) {
+                    throw new IllegalStateException("Flash sale already active for product on another instance: "
+                            + productId);
+                }
+                int initial = rows.get(0) != null ? rows.get(0) : 0;
+                flashSaleRepository.save(new FlashSale(productId, initial, instanceId));
+                Sale sale = new Sale(initial, stripeCount);
+                if (sales.putIfAbsent(productId, sale) != null) {
+                    throw new IllegalStateException("Flash sale already active for product: " + productId);
+                }
+                started[0] = sale;
+                return initial;
+            });
+        } catch (RuntimeException e) {
+            // Режим не включился: проданное из счетчика до отката записываем в строку напрямую
+            if (started[0] != null && sales.remove(productId, started[0])) {
+                long delta = started[0].pendingDelta.sumThenReset();
+                if (delta != 0) {
+                    jdbcTemplate.update(APPLY_DELTA_SQL, delta, productId);
+                }
+            }
+            throw e;
+        }
+        logger.info("Flash sale started for product {}: {} in stock", productId, quantity);
+        return quantity;
+    }
+
+    // Выключить режим: дописать накопленные изменения и вернуть товар на обычное резервирование.
+    // Строка товара блокируется до закрытия: транзакции, резервирующие под этой блокировкой,
+    // успевают завершиться, а запросы из окна закрытия читают строку уже после финальной записи.
+    // Под монитором flush(), чтобы плановая запись не догнала финальную уже после commit
+    public synchronized int stop(Long productId) {
+        Sale sale = sales.get(productId);
+        if (sale == null) {
+            throw new IllegalStateException("Flash sale is not active for product: " + productId);
+        }
+        CountDownLatch closing = new CountDownLatch(1);
+        long[] flushed = new long[1];
+        try {
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.queryForList("SELECT id FROM products WHERE id = ? FOR UPDATE", Long.class, productId);
+                sale.closing = closing;
+                awaitInFlight(sale, productId);
+                flushed[0] = sale.pendingDelta.sumThenReset();
+                if (flushed[0] != 0) {
+                    jdbcTemplate.update(APPLY_DELTA_SQL, flushed[0], productId);
+                }
+                flashSaleRepository.deleteById(productId);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // Продажа продолжается: незаписанное возвращается в счетчик изменений, ждущие запросы - в счетчик
+            sale.pendingDelta.add(flushed[0]);
+            sale.closing = null;
+            closing.countDown();
+            throw e;
+        }
+        sales.remove(productId);
+        closing.countDown();
+        int remaining = sale.stock.available();
+        logger.info("Flash sale stopped for product {}: {} in stock", productId, remaining);
+        return remaining;
+    }
+
+    // Резервирования, начатые до закрытия, - это несколько CAS в счетчике; ждем их с таймаутом
+    private void awaitInFlight(Sale sale, Long productId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stopTimeoutMs);
+        while (sale.inFlight.sum() != 0) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Flash sale reservations did not finish in time for product: "
+                        + productId);
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private boolean await(CountDownLatch closing) {
+        try {
+            return closing.await(stopTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Write-behind: накопленные изменения остатков всех товаров одним batch UPDATE
+    @Scheduled(fixedDelayString = "${app.flash-sale.flush-interval-ms:200}")
+    public synchronized void flush() {
+        List<Long> productIds = new ArrayList<>();
+        List<Object[]> args = new ArrayList<>();
+        sales.forEach((productId, sale) -> {
+            long delta = sale.pendingDelta.sumThenReset();
+            if (delta != 0) {
+                productIds.add(productId);
+                args.add(new Object[] {delta, productId});
+            }
+        });
+        if (args.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, args);
+        } catch (Exception e) {
+            // Не записали - вернем изменения в очередь до следующего сброса
+            for (Object[] row : args) {
+                Sale sale = sales.get((Long) row[1]);
+                if (sale != null) {
+                    sale.pendingDelta.add((Long) row[0]);
+                }
+            }
+            logger.error("Failed to flush flash sale stock, will retry: ", e);
+            return;
+        }
+        List<Product> products = productRepository.findAllById(productIds);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(products));
+    }
+
+    // Остаток по заказам: initial_quantity минус проданное с начала продажи
+    private int reconcile(FlashSale flashSale) {
+        long sold = flashSaleRepository.countSoldSince(flashSale.getProductId(), flashSale.getStartedAt());
+        int remaining = (int) Math.max(0, flashSale.getInitialQuantity() - sold);
+        jdbcTemplate.update("UPDATE products SET quantity = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+                remaining, flashSale.getProductId());
+        return remaining;
+    }
+
+    private static final class Sale {
+        final StripedStockCounter stock;
+        // Изменение остатка, еще не записанное в БД
+        final LongAdder pendingDelta = new LongAdder();
+        final LongAdder inFlight = new LongAdder();
+        // Не null, пока stop() закрывает продажу; отпускается после commit или отмены закрытия
+        volatile CountDownLatch closing;
+
+        Sale(int quantity, int stripeCount) {
+            this.stock = new StripedStockCounter(quantity, stripeCount);
+        }
+    }
+}
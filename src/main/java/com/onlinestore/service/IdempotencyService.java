@@ -0,0 +1,222 @@
+package com.onlinestore.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.onlinestore.model.IdempotencyRecord;
+import com.onlinestore.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Идемпотентность POST-запросов по заголовку Idempotency-Key.
+// Перед выполнением ключ захватывается в таблице idempotency_keys строкой-маркером
+// "выполняется" (INSERT ... ON CONFLICT DO UPDATE ... WHERE expires_at < now: занятый ключ
+// перезаписывается, только если его строка истекла), поэтому дубликат на любом экземпляре
+// приложения не выполняет запрос второй раз, а опрашивает эту строку до готового ответа.
+// Ответ сохраняется в ту же строку (TTL app.idempotency.ttl-hours) и в ограниченный
+// по размеру Caffeine-кэш перед ней. Маркер упавшего экземпляра истекает через
+// app.idempotency.claim-ttl-seconds, после чего ключ можно захватить заново.
+// 5xx не сохраняются, ключ освобождается: действие отвечает 5xx, только если ничего
+// не сделало (см. OrderIntakeService.place), и клиент может повторить запрос.
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    // Попыток записать готовый ответ в строку ключа
+    private static final int STORE_ATTEMPTS = 3;
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Cache<String, IdempotencyRecord> cache;
+
+    private final Duration ttl;
+
+    private final Duration claimTtl;
+
+    // Сколько дубликат ждет первый запрос
+    @Value("${app.idempotency.wait-ms:10000}")
+    private long waitMs = 10000;
+
+    // Как часто дубликат перечитывает строку ключа
+    @Value("${app.idempotency.poll-ms:50}")
+    private long pollMs = 50;
+
+    public IdempotencyService(@Value("${app.idempotency.cache-size:10000}") long cacheSize,
+                              @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${app.idempotency.claim-ttl-seconds:300}") long claimTtlSeconds) {
+        this.ttl = Duration.ofHours(ttlHours);
+        this.claimTtl = Duration.ofSeconds(claimTtlSeconds);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // Выполнить action один раз для ключа; request - тело запроса для проверки, что ключ не переиспользован
+    public ResponseEntity<?> execute(String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", HEADER + " must be 1-" + MAX_KEY_LENGTH + " characters"));
+        }
+        String requestHash = hash(request);
+
+        IdempotencyRecord cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (repository.claim(key, requestHash, now, now.plus(claimTtl)) == 0) {
+            return awaitOther(key, requestHash);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(key);
+            throw e;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            release(key);
+        } else {
+            store(key, requestHash, response);
+        }
+        return response;
+    }
+
+    // Удаление просроченных ключей
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:600000}")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = repository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    // Ключ занят другим запросом (возможно, на другом экземпляре): ждем его ответ в таблице
+    private ResponseEntity<?> awaitOther(String key, String requestHash) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        while (true) {
+            IdempotencyRecord record = repository.findById(key).orElse(null);
+            if (record == null) {
+                // Первый запрос завершился ошибкой 5xx и освободил ключ - клиент может повторить
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Original request with this " + HEADER + " failed, please retry"));
+            }
+            if (!record.isInProgress()) {
+                cache.put(key, record);
+                return replay(record, requestHash);
+            }
+            if (!record.getRequestHash().equals(requestHash)) {
+                // Тот же ключ с другим запросом - 422, не дожидаясь ответа
+                return replay(record, requestHash);
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Request with this " + HEADER + " is still in progress: " + key));
+            }
+            try {
+                Thread.sleep(pollMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        }
+    }
+
+    private void release(String key) {
+        try {
+            repository.release(key);
+        } catch (Exception e) {
+            // Маркер истечет сам через claim-ttl
+            logger.error("Failed to release {} {}: ", HEADER, key, e);
+        }
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String requestHash) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(Map.of("error", HEADER + " was already used with a different request"));
+        }
+        return ResponseEntity.status(record.getStatusCode())
+                .header(REPLAYED_HEADER, "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(record.getResponseBody());
+    }
+
+    private void store(String key, String requestHash, ResponseEntity<?> response) {
+        IdempotencyRecord record;
+        try {
+            String body = response.getBody() != null ? objectMapper.writeValueAsString(response.getBody()) : null;
+            record = new IdempotencyRecord(key, requestHash,
+                    response.getStatusCodeValue(), body, LocalDateTime.now().plus(ttl));
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize response for {} {}: ", HEADER, key, e);
+            release(key);
+            return;
+        }
+        cache.put(key, record);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (repository.complete(key, record.getStatusCode(), record.getResponseBody(), record.getExpiresAt()) == 0) {
+                    logger.warn("Claim for {} {} expired before the response was stored", HEADER, key);
+                }
+                return;
+            } catch (Exception e) {
+                if (attempt >= STORE_ATTEMPTS) {
+                    // Ответ уже получен - отдаем его. Маркер снимаем, иначе до claim-ttl другие
+                    // экземпляры отвечали бы на повторы 409; повторы сюда обслужит кэш
+                    logger.error("Failed to store response for {} {}, releasing the key: ", HEADER, key, e);
+                    release(key);
+                    return;
+                }
+                logger.warn("Failed to store response for {} {}, retrying: {}", HEADER, key, e.getMessage());
+            }
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot hash request", e);
+        }
+    }
+}
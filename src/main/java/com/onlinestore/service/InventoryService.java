@@ -0,0 +1,344 @@
+package com.onlinestore.service;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.exception.InsufficientStockException;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Резервирование складских остатков без гонки "прочитал остаток - проверил - записал":
+// одна позиция - условный UPDATE (quantity >= n), несколько позиций или заказов -
+// блокировка всех строк одним SELECT ... FOR UPDATE и проверка в памяти.
+// Строки всегда блокируются по возрастанию id товара: параллельные транзакции
+// берут общие строки в одном порядке и не упираются в deadlock.
+// Условный UPDATE и возврат остатка очищают контекст персистентности -
+// загруженные до вызова сущности становятся detached.
+// Товары в режиме flash-продажи резервируются в памяти через FlashSaleService.
+// Режим перепроверяется под блокировкой строки по таблице flash_sales: продажа, включенная
+// после выбора пути или на другом экземпляре приложения, уже перенесла остаток в счетчик,
+// и списание из строки продало бы его дважды. Товар, продажу которого ведет другой
+// экземпляр, здесь не резервируется.
+@Service
+public class InventoryService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    // Списать остатки по всем позициям (productId -> количество) или ни по одной.
+    // При нехватке уже списанные позиции возвращаются и бросается InsufficientStockException;
+    // транзакция вызывающего при этом не помечается rollback-only и может вернуть обычный ответ.
+    // Возвращает товары с новыми остатками в порядке возрастания id
+    @Transactional(noRollbackFor = {InsufficientStockException.class, IllegalArgumentException.class})
+    public List<Product> reserve(Map<Long, Integer> quantities) {
+        Reservation reservation = reserveAll(List.of(quantities)).get(0);
+        if (!reservation.isSuccess()) {
+            throw reservation.getFailure();
+        }
+        return reservation.getProducts();
+    }
+
+    // Резервирование для нескольких заказов в одной транзакции: каждый заказ
+    // резервируется целиком или не резервируется, отказ одного не влияет на остальные.
+    // Заказ из одной позиции - один условный UPDATE. Иначе все товары читаются одним
+    // SELECT ... FOR UPDATE по возрастанию id, заказы проверяются в памяти по очереди,
+    // а новые остатки уходят одним batch UPDATE при flush.
+    // Результаты - в порядке заказов
+    @Transactional(noRollbackFor = {InsufficientStockException.class, IllegalArgumentException.class})
+    public List<Reservation> reserveAll(List<Map<Long, Integer>> orders) {
+        List<SortedMap<Long, Integer>> lines = new ArrayList<>(orders.size());
+        Set<Long> stockIds = new TreeSet<>();
+        Set<Long> flashIds = new TreeSet<>();
+        for (Map<Long, Integer> order : orders) {
+            SortedMap<Long, Integer> orderLines = validate(order);
+            lines.add(orderLines);
+            for (Long productId : orderLines.keySet()) {
+                (flashSaleService.isActive(productId) ? flashIds : stockIds).add(productId);
+            }
+        }
+        if (orders.size() == 1 && flashIds.isEmpty() && stockIds.size() == 1) {
+            Long productId = lines.get(0).firstKey();
+            Reservation single = reserveSingle(productId, lines.get(0).get(productId));
+            if (single != null) {
+                return List.of(single);
+            }
+            flashIds.add(productId);
+            stockIds.remove(productId);
+        }
+
+        Map<Long, Product> locked = new HashMap<>();
+        Map<Long, Integer> available = new HashMap<>();
+        if (!stockIds.isEmpty()) {
+            List<Product> rows = productRepository.findAllByIdForUpdate(stockIds);
+            Set<Long> started = flashSaleService.findStarted(stockIds);
+            for (Product product : rows) {
+                if (started.contains(product.getId())) {
+                    flashIds.add(product.getId());
+                    continue;
+                }
+                locked.put(product.getId(), product);
+                available.put(product.getId(), product.getQuantity() != null ? product.getQuantity() : 0);
+            }
+        }
+
+        InsufficientStockException[] failures = new InsufficientStockException[orders.size()];
+        List<long[]> flashTaken = new ArrayList<>();
+        for (int order = 0; order < orders.size(); order++) {
+            failures[order] = check(lines.get(order), flashIds, locked, available);
+            if (failures[order] == null) {
+                failures[order] = takeFlash(lines.get(order), flashIds, locked, available, flashTaken);
+            }
+            if (failures[order] == null) {
+                lines.get(order).forEach((productId, quantity) -> {
+                    if (available.containsKey(productId)) {
+                        available.put(productId, available.get(productId) - quantity);
+                    }
+                });
+            }
+        }
+
+        // Managed-сущности под блокировкой: UPDATE'ы уйдут batch'ем при flush
+        List<Product> changed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Product product : locked.values()) {
+            int quantity = available.get(product.getId());
+            if (product.getQuantity() == null || quantity != product.getQuantity()) {
+                product.setQuantity(quantity);
+                product.setUpdatedAt(now);
+                changed.add(product);
+            }
+        }
+        if (!changed.isEmpty()) {
+            changed.sort((a, b) -> a.getId().compareTo(b.getId()));
+            eventPublisher.publishEvent(ProductChangedEvent.saved(changed));
+        }
+        releaseFlashOnRollback(flashTaken);
+
+        // Для flash-продажи - копии, а не managed-сущности: остаток из памяти не должен уйти в БД при flush
+        Map<Long, Product> productsById = new HashMap<>(locked);
+        if (!flashIds.isEmpty()) {
+            for (Product product : productRepository.findAllById(flashIds)) {
+                Product copy = new Product(product);
+                Integer inMemory = flashSaleService.getAvailable(product.getId());
+                copy.setQuantity(inMemory != null ? inMemory : product.getQuantity());
+                productsById.put(product.getId(), copy);
+            }
+        }
+
+        List<Reservation> result = new ArrayList<>(orders.size());
+        for (int order = 0; order < orders.size(); order++) {
+            if (failures[order] != null) {
+                result.add(new Reservation(null, failures[order]));
+                continue;
+            }
+            List<Product> products = new ArrayList<>(lines.get(order).size());
+            for (Long productId : lines.get(order).keySet()) {
+                products.add(productsById.get(productId));
+            }
+            result.add(new Reservation(products, null));
+        }
+        return result;
+    }
+
+    // Вернуть остатки на склад (отмена позиции, уменьшение количества).
+    // Остаток flash-продажи возвращается в счетчик только после commit вызывающего
+    @Transactional
+    public List<Product> release(Map<Long, Integer> quantities) {
+        SortedMap<Long, Integer> lines = validate(quantities);
+        List<Long> changedIds = new ArrayList<>(lines.size());
+        List<long[]> flash = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            if (flashSaleService.isActive(line.getKey())) {
+                flash.add(new long[] {line.getKey(), line.getValue()});
+            } else {
+                productRepository.releaseStock(line.getKey(), line.getValue());
+                changedIds.add(line.getKey());
+            }
+        }
+        releaseFlashAfterCommit(flash);
+        if (changedIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Product> products = productRepository.findAllById(changedIds);
+        products.sort((a, b) -> a.getId().compareTo(b.getId()));
+        eventPublisher.publishEvent(ProductChangedEvent.saved(products));
+        return products;
+    }
+
+    private SortedMap<Long, Integer> validate(Map<Long, Integer> quantities) {
+        SortedMap<Long, Integer> lines = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (productId == null || quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Invalid stock line: product " + productId + ", quantity " + quantity);
+            }
+            lines.put(productId, quantity);
+        });
+        return lines;
+    }
+
+    // Одна позиция - один условный UPDATE без предварительного SELECT.
+    // null - товар успел перейти в режим flash-продажи, резервировать нужно в памяти
+    private Reservation reserveSingle(Long productId, int quantity) {
+        int updated = productRepository.reserveStock(productId, quantity);
+        if (!flashSaleService.findStarted(List.of(productId)).isEmpty()) {
+            if (updated != 0) {
+                productRepository.releaseStock(productId, quantity);
+            }
+            return null;
+        }
+        if (updated == 0) {
+            Product product = productRepository.findById(productId).orElse(null);
+            return new Reservation(null, new InsufficientStockException(productId,
+                    product != null ? product.getName() : null,
+                    product != null ? product.getQuantity() : null, quantity));
+        }
+        List<Product> products = productRepository.findAllById(List.of(productId));
+        eventPublisher.publishEvent(ProductChangedEvent.saved(products));
+        return new Reservation(products, null);
+    }
+
+    // Проверка позиций заказа по остаткам в памяти (с учетом предыдущих заказов пачки)
+    private InsufficientStockException check(SortedMap<Long, Integer> lines, Set<Long> flashIds,
+                                             Map<Long, Product> locked, Map<Long, Integer> available) {
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            if (flashIds.contains(line.getKey())) {
+                continue;
+            }
+            Product product = locked.get(line.getKey());
+            if (product == null) {
+                return new InsufficientStockException(line.getKey(), null, null, line.getValue());
+            }
+            int left = available.get(line.getKey());
+            if (left < line.getValue()) {
+                return new InsufficientStockException(line.getKey(), product.getName(), left, line.getValue());
+            }
+        }
+        return null;
+    }
+
+    // Позиции flash-продажи - в памяти; при нехватке взятое возвращается
+    private InsufficientStockException takeFlash(SortedMap<Long, Integer> lines, Set<Long> flashIds,
+                                                 Map<Long, Product> locked, Map<Long, Integer> available,
+                                                 List<long[]> flashTaken) {
+        List<long[]> taken = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            if (!flashIds.contains(line.getKey())) {
+                continue;
+            }
+            FlashSaleService.Take take = flashSaleService.tryReserve(line.getKey(), line.getValue());
+            if (take == FlashSaleService.Take.TAKEN) {
+                taken.add(new long[] {line.getKey(), line.getValue()});
+                continue;
+            }
+            InsufficientStockException failure = take == FlashSaleService.Take.CLOSED
+                    ? moveToStock(line.getKey(), line.getValue(), flashIds, locked, available)
+                    : flashShortage(line.getKey(), line.getValue());
+            if (failure != null) {
+                for (long[] item : taken) {
+                    flashSaleService.release(item[0], (int) item[1]);
+                }
+                return failure;
+            }
+        }
+        flashTaken.addAll(taken);
+        return null;
+    }
+
+    private InsufficientStockException flashShortage(Long productId, int quantity) {
+        Product product = productRepository.findById(productId).orElse(null);
+        return new InsufficientStockException(productId,
+                product != null ? product.getName() : null,
+                product != null ? flashSaleService.getAvailable(productId) : null,
+                quantity);
+    }
+
+    // Продажа не ведется этим экземпляром: завершилась после выбора пути или идет на другом.
+    // Строка блокируется вне общего порядка id (только в окне закрытия продажи) и дальше
+    // товар резервируется из нее вместе с остальными заблокированными
+    private InsufficientStockException moveToStock(Long productId, int quantity, Set<Long> flashIds,
+                                                   Map<Long, Product> locked, Map<Long, Integer> available) {
+        List<Product> rows = productRepository.findAllByIdForUpdate(List.of(productId));
+        if (rows.isEmpty()) {
+            return new InsufficientStockException(productId, null, null, quantity);
+        }
+        Product product = rows.get(0);
+        if (!flashSaleService.findStarted(List.of(productId)).isEmpty()) {
+            // Остаток в счетчике другого экземпляра
+            return new InsufficientStockException(productId, product.getName(), 0, quantity);
+        }
+        flashIds.remove(productId);
+        locked.put(productId, product);
+        available.put(productId, product.getQuantity() != null ? product.getQuantity() : 0);
+        int left = available.get(productId);
+        return left < quantity ? new InsufficientStockException(productId, product.getName(), left, quantity) : null;
+    }
+
+    // До commit остаток в счетчик не возвращаем: при откате позиция заказа его еще держит
+    private void releaseFlashAfterCommit(List<long[]> flash) {
+        if (flash.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            flash.forEach(item -> flashSaleService.release(item[0], (int) item[1]));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                flash.forEach(item -> flashSaleService.release(item[0], (int) item[1]));
+            }
+        });
+    }
+
+    // Заказы не сохранились - вернуть зарезервированное в памяти
+    private void releaseFlashOnRollback(List<long[]> flashTaken) {
+        if (flashTaken.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    for (long[] item : flashTaken) {
+                        flashSaleService.release(item[0], (int) item[1]);
+                    }
+                }
+            }
+        });
+    }
+
+    // Результат резервирования одного заказа: товары в порядке id или причина отказа
+    public static final class Reservation {
+        private final List<Product> products;
+        private final InsufficientStockException failure;
+
+        Reservation(List<Product> products, InsufficientStockException failure) {
+            this.products = products;
+            this.failure = failure;
+        }
+
+        public boolean isSuccess() { return failure == null; }
+        public List<Product> getProducts() { return products; }
+        public InsufficientStockException getFailure() { return failure; }
+    }
+}
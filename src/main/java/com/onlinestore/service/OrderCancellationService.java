@@ -0,0 +1,158 @@
+package com.onlinestore.service;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Отмена и удаление заказов с возвратом остатков одним SQL-оператором (PostgreSQL):
+// блокировка заказов в нужных статусах, смена статуса или удаление, сумма позиций
+// по товарам и UPDATE products ... FROM по этим суммам - один round trip на любое
+// число заказов, без загрузки позиций и товаров в JPA.
+// Заказы и товары блокируются по возрастанию id, как и при резервировании.
+// Остаток товаров в режиме flash-продажи возвращается в счетчик после commit.
+@Service
+public class OrderCancellationService {
+
+    public static final Set<String> CANCELLABLE = Set.of("PENDING", "PROCESSING");
+
+    public static final Set<String> PENDING = Set.of("PENDING");
+
+    private static final String CANCEL =
+            "UPDATE orders o SET status = 'CANCELLED', updated_at = CURRENT_TIMESTAMP " +
+            "FROM target t WHERE o.id = t.id RETURNING o.id, t.status";
+
+    private static final String DELETE =
+            "DELETE FROM orders o USING target t WHERE o.id = t.id RETURNING o.id, t.status";
+
+    // %s - CANCEL или DELETE; параметры: id заказов, допустимые статусы, id товаров flash-продажи
+    private static final String RESTOCK_SQL =
+            "WITH target AS (" +
+            "SELECT id, status FROM orders WHERE id = ANY(?) AND status = ANY(?) ORDER BY id FOR UPDATE" +
+            "), changed AS (%s" +
+            "), lines AS (" +
+            "SELECT i.product_id, SUM(i.quantity) AS quantity FROM order_items i " +
+            "JOIN changed c ON c.id = i.order_id GROUP BY i.product_id" +
+            "), locked AS (" +
+            "SELECT id FROM products WHERE id IN (SELECT product_id FROM lines) AND NOT (id = ANY(?)) " +
+            "ORDER BY id FOR UPDATE" +
+            "), restocked AS (" +
+            "UPDATE products p SET quantity = p.quantity + l.quantity, updated_at = CURRENT_TIMESTAMP " +
+            "FROM lines l JOIN locked k ON k.id = l.product_id WHERE p.id = l.product_id RETURNING p.id" +
+            ") " +
+            "SELECT c.id AS order_id, c.status AS old_status, CAST(NULL AS BIGINT) AS product_id, " +
+            "CAST(NULL AS BIGINT) AS quantity FROM changed c " +
+            "UNION ALL " +
+            "SELECT NULL, NULL, l.product_id, l.quantity FROM lines l";
+
+    private static final String CANCEL_SQL = String.format(RESTOCK_SQL, CANCEL);
+
+    private static final String DELETE_SQL = String.format(RESTOCK_SQL, DELETE);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private OrderStatusHistoryService historyService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // Отменить заказы в статусах fromStatuses; возвращает id отмененных (прочие пропускаются)
+    @Transactional
+    public List<Long> cancel(Collection<Long> orderIds, Set<String> fromStatuses) {
+        Map<Long, String> changed = execute(CANCEL_SQL, orderIds, fromStatuses);
+        changed.forEach((orderId, oldStatus) -> historyService.record(orderId, oldStatus, "CANCELLED"));
+        return new ArrayList<>(changed.keySet());
+    }
+
+    // Удалить PENDING-заказы с возвратом остатков; возвращает id удаленных
+    @Transactional
+    public List<Long> deletePending(Collection<Long> orderIds) {
+        return new ArrayList<>(execute(DELETE_SQL, orderIds, PENDING).keySet());
+    }
+
+    private Map<Long, String> execute(String sql, Collection<Long> orderIds, Set<String> fromStatuses) {
+        Map<Long, String> changed = new LinkedHashMap<>();
+        if (orderIds.isEmpty()) {
+            return changed;
+        }
+        // Несохраненные изменения JPA - в БД до оператора; после него загруженные сущности устарели
+        entityManager.flush();
+        Set<Long> flashIds = flashSaleService.getActiveSales().keySet();
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("bigint", orderIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("varchar", fromStatuses.toArray()));
+            statement.setArray(3, connection.createArrayOf("bigint", flashIds.toArray()));
+            return statement;
+        }, resultSet -> {
+            long orderId = resultSet.getLong("order_id");
+            if (!resultSet.wasNull()) {
+                changed.put(orderId, resultSet.getString("old_status"));
+            } else {
+                lines.put(resultSet.getLong("product_id"), resultSet.getInt("quantity"));
+            }
+        });
+        entityManager.clear();
+
+        List<Long> restocked = new ArrayList<>(lines.size());
+        List<long[]> flash = new ArrayList<>();
+        lines.forEach((productId, quantity) -> {
+            if (flashIds.contains(productId)) {
+                flash.add(new long[] {productId, quantity});
+            } else {
+                restocked.add(productId);
+            }
+        });
+        releaseFlashAfterCommit(flash);
+        if (!restocked.isEmpty()) {
+            List<Product> products = productRepository.findAllById(restocked);
+            products.sort((a, b) -> a.getId().compareTo(b.getId()));
+            eventPublisher.publishEvent(ProductChangedEvent.saved(products));
+        }
+        return changed;
+    }
+
+    // До commit остаток в счетчик не возвращаем: при откате он ушел бы в продажу повторно
+    private void releaseFlashAfterCommit(List<long[]> flash) {
+        if (flash.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            flash.forEach(item -> flashSaleService.release(item[0], (int) item[1]));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                flash.forEach(item -> flashSaleService.release(item[0], (int) item[1]));
+            }
+        });
+    }
+}
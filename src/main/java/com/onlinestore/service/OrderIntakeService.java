@@ -0,0 +1,258 @@
+package com.onlinestore.service;
+
+import com.onlinestore.dto.OrderRequest;
+import com.onlinestore.event.OrderPlacedEvent;
+import com.onlinestore.model.Order;
+import com.onlinestore.model.User;
+import com.onlinestore.repository.OrderRepository;
+import com.onlinestore.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Прием заказов с групповым коммитом. Параллельные заказы копятся в очереди
+// до linger-ms (или до max-batch штук) и пишутся одной транзакцией: резервирование
+// всех позиций, batch INSERT заказов и позиций, один commit. Каждый вызывающий
+// получает свой результат; отказ одного заказа (нет пользователя, не хватает остатка)
+// не валит остальные. Если падает сама общая транзакция, заказы пачки
+// повторяются по одному, каждый в своей транзакции.
+// Вызывающий, не дождавшийся ответа, снимает заказ с очереди; заказ, уже взятый
+// в пачку, дожидается commit - иначе "повторите" получил бы уже созданный заказ.
+@Service
+public class OrderIntakeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderIntakeService.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private OrderStatusHistoryService historyService;
+
+    // Максимум заказов в одной транзакции
+    @Value("${app.orders.intake.max-batch:64}")
+    private int maxBatch = 64;
+
+    // Сколько ждать попутные заказы после первого в пачке
+    @Value("${app.orders.intake.linger-ms:5}")
+    private long lingerMs = 5;
+
+    @Value("${app.orders.intake.queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    private BlockingQueue<Pending> queue;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-intake");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        executor.execute(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Поставить заказ в очередь и дождаться commit его пачки. RejectedExecutionException
+    // (очередь заполнена), TimeoutException и InterruptedException - заказ не создан и не будет
+    public Order place(OrderRequest request, long timeoutMs)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Pending pending = new Pending(request);
+        if (!queue.offer(pending)) {
+            throw new RejectedExecutionException("Order intake queue is full");
+        }
+        try {
+            return pending.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (pending.claim()) {
+                pending.future.cancel(false);
+                throw e;
+            }
+            // Пачка уже взяла заказ: ответ будет после ее commit или отката,
+            // ждем его и при прерывании - исход заказа не должен остаться неизвестным
+            try {
+                return pending.future.join();
+            } catch (CompletionException failure) {
+                throw new ExecutionException(failure.getCause());
+            } finally {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<Pending> batch = new ArrayList<>(maxBatch);
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < maxBatch) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                queue.drainTo(batch, maxBatch - batch.size());
+                // Заказы, которые вызывающий уже снял по таймауту, пропускаем
+                batch.removeIf(pending -> !pending.claim());
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Order intake failed: ", e);
+            }
+        }
+    }
+
+    void write(List<Pending> batch) {
+        // SYNC-история: вызывающие получают заказы после записи их первых статусов
+        boolean syncScope = historyService.openSyncScope();
+        try {
+            List<Object> outcomes;
+            try {
+                outcomes = transactionTemplate.execute(status -> process(batch));
+            } finally {
+                if (syncScope) {
+                    historyService.closeSyncScope();
+                }
+            }
+            complete(batch, outcomes);
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            logger.warn("Order batch of {} failed, retrying one by one: {}", batch.size(), e.getMessage());
+            for (Pending pending : batch) {
+                write(List.of(pending));
+            }
+        }
+    }
+
+    // Результат по каждому заказу: сохраненный Order или исключение-отказ
+    private List<Object> process(List<Pending> batch) {
+        List<Long> userIds = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            userIds.add(pending.request.getUserId());
+        }
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds)) {
+            usersById.put(user.getId(), user);
+        }
+
+        List<Object> outcomes = new ArrayList<>(batch.size());
+        List<Integer> reserving = new ArrayList<>(batch.size());
+        List<Map<Long, Integer>> quantities = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            OrderRequest request = batch.get(i).request;
+            if (usersById.get(request.getUserId()) == null) {
+                outcomes.add(new IllegalArgumentException("User not found: " + request.getUserId()));
+            } else if (request.getItems().isEmpty()) {
+                outcomes.add(new IllegalArgumentException("Order must have at least one item"));
+            } else {
+                outcomes.add(null);
+                reserving.add(i);
+                quantities.add(request.quantities());
+            }
+        }
+
+        List<InventoryService.Reservation> reservations = inventoryService.reserveAll(quantities);
+        List<Order> orders = new ArrayList<>(reserving.size());
+        for (int r = 0; r < reserving.size(); r++) {
+            int i = reserving.get(r);
+            InventoryService.Reservation reservation = reservations.get(r);
+            if (!reservation.isSuccess()) {
+                outcomes.set(i, reservation.getFailure());
+                continue;
+            }
+            Order order = orderService.buildOrder(batch.get(i).request,
+                    usersById.get(batch.get(i).request.getUserId()), reservation.getProducts());
+            orders.add(order);
+            outcomes.set(i, order);
+        }
+        // Id из последовательности, INSERT'ы заказов и позиций уходят batch'ами при commit
+        orderRepository.saveAll(orders);
+        if (!orders.isEmpty()) {
+            eventPublisher.publishEvent(OrderPlacedEvent.of(orders));
+        }
+        return outcomes;
+    }
+
+    private void complete(List<Pending> batch, List<Object> outcomes) {
+        for (int i = 0; i < batch.size(); i++) {
+            Object outcome = outcomes.get(i);
+            if (outcome instanceof Order) {
+                batch.get(i).future.complete((Order) outcome);
+            } else {
+                batch.get(i).future.completeExceptionally((Throwable) outcome);
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    static final class Pending {
+        final OrderRequest request;
+        final CompletableFuture<Order> future = new CompletableFuture<>();
+        // Заказ забирает либо пачка, либо вызывающий по таймауту - кто первый
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Pending(OrderRequest request) {
+            this.request = request;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
@@ -1,18 +1,21 @@
 package com.onlinestore.service;
 
+import com.onlinestore.dto.OrderRequest;
+import com.onlinestore.event.OrderPlacedEvent;
 import com.onlinestore.model.Order;
 import com.onlinestore.model.OrderItem;
 import com.onlinestore.model.Product;
 import com.onlinestore.model.User;
 import com.onlinestore.repository.OrderRepository;
-import com.onlinestore.repository.ProductRepository;
 import com.onlinestore.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class OrderService {
@@ -24,7 +27,13 @@ public class OrderService {
     private UserRepository userRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private InventoryService inventoryService;
+
+    @Autowired
+    private OrderCancellationService cancellationService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Order createOrder(Long userId, String shippingAddress) {
@@ -34,7 +43,44 @@ public class OrderService {
         // Исправлено: используем правильный конструктор
         Order order = new Order(user, shippingAddress);
         
-        return orderRepository.save(order);
+        Order saved = orderRepository.save(order);
+        eventPublisher.publishEvent(OrderPlacedEvent.of(saved));
+        return saved;
+    }
+
+    // Заказ целиком: пользователь, резервирование всех позиций и сохранение в одной транзакции
+    @Transactional
+    public Order placeOrder(OrderRequest request) {
+        User user = userRepository.findById(request.getUserId())
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + request.getUserId()));
+        if (request.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Order must have at least one item");
+        }
+        List<Product> products = inventoryService.reserve(request.quantities());
+        Order saved = orderRepository.save(buildOrder(request, user, products));
+        eventPublisher.publishEvent(OrderPlacedEvent.of(saved));
+        return saved;
+    }
+
+    // Новый заказ с позициями по уже зарезервированным товарам.
+    // Повторные строки одного товара сливаются в одну позицию, как и при резервировании:
+    // order_items уникален по (order_id, product_id)
+    public Order buildOrder(OrderRequest request, User user, List<Product> products) {
+        Map<Long, Product> productsById = new HashMap<>();
+        for (Product product : products) {
+            productsById.put(product.getId(), product);
+        }
+        Order order = new Order(user, request.getShippingAddress());
+        for (Map.Entry<Long, Integer> line : request.quantities().entrySet()) {
+            Product product = productsById.get(line.getKey());
+            OrderItem item = new OrderItem();
+            item.setProduct(product);
+            item.setQuantity(line.getValue());
+            item.setPrice(product.getPrice());
+            item.setOrder(order);
+            order.addItem(item);
+        }
+        return order;
     }
 
     @Transactional
@@ -46,22 +92,18 @@ public class OrderService {
             throw new RuntimeException("Cannot modify order in status: " + order.getStatus());
         }
         
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+        // Списываем остаток атомарно; нет товара или не хватает - InsufficientStockException
+        Product product = inventoryService.reserve(Map.of(productId, quantity)).get(0);
         
-        // Проверка наличия товара
-        if (product.getQuantity() < quantity) {
-            throw new RuntimeException("Not enough products in stock");
-        }
+        // Условный UPDATE остатка очищает контекст персистентности: заказ перечитываем,
+        // иначе ленивые items отсоединенной сущности бросят LazyInitializationException
+        order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found"));
         
         // Создаем позицию заказа
         OrderItem orderItem = new OrderItem(order, product, quantity);
         order.addItem(orderItem);
         
-        // Уменьшаем количество товара на складе
-        product.setQuantity(product.getQuantity() - quantity);
-        productRepository.save(product);
-        
         return orderRepository.save(order);
     }
 
@@ -79,14 +121,13 @@ public class OrderService {
                 .findFirst()
                 .orElseThrow(() -> new RuntimeException("Item not found in order"));
         
-        // Возвращаем товар на склад
-        Product product = itemToRemove.getProduct();
-        product.setQuantity(product.getQuantity() + itemToRemove.getQuantity());
-        productRepository.save(product);
-        
         order.removeItem(itemToRemove);
+        Order saved = orderRepository.save(order);
         
-        return orderRepository.save(order);
+        // Возвращаем товар на склад
+        inventoryService.release(Map.of(itemToRemove.getProduct().getId(), itemToRemove.getQuantity()));
+        
+        return saved;
     }
 
     @Transactional
@@ -103,22 +144,22 @@ public class OrderService {
                 .findFirst()
                 .orElseThrow(() -> new RuntimeException("Item not found in order"));
         
-        Product product = item.getProduct();
+        Long productId = item.getProduct().getId();
         int quantityDiff = newQuantity - item.getQuantity();
         
-        // Проверяем наличие товара при увеличении количества
-        if (quantityDiff > 0 && product.getQuantity() < quantityDiff) {
-            throw new RuntimeException("Not enough products in stock");
-        }
-        
-        // Обновляем складские остатки
-        product.setQuantity(product.getQuantity() - quantityDiff);
-        productRepository.save(product);
-        
         // Обновляем количество в заказе
         item.setQuantity(newQuantity);
+        order.recalculateTotalAmount();
+        Order saved = orderRepository.save(order);
+        
+        // Обновляем складские остатки; при нехватке исключение откатит и изменение позиции
+        if (quantityDiff > 0) {
+            inventoryService.reserve(Map.of(productId, quantityDiff));
+        } else if (quantityDiff < 0) {
+            inventoryService.release(Map.of(productId, -quantityDiff));
+        }
         
-        return orderRepository.save(order);
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -133,7 +174,11 @@ public class OrderService {
     }
 
     @Transactional
+    @AwaitStatusHistory
     public Order updateOrderStatus(Long orderId, String status) {
+        if ("CANCELLED".equalsIgnoreCase(status)) {
+            return cancelOrder(orderId);
+        }
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         
@@ -147,17 +192,6 @@ public class OrderService {
             case "DELIVERED":
                 order.deliver();
                 break;
-            case "CANCELLED":
-                if (order.canBeCancelled()) {
-                    // Возвращаем товары на склад при отмене
-                    for (OrderItem item : order.getItems()) {
-                        Product product = item.getProduct();
-                        product.setQuantity(product.getQuantity() + item.getQuantity());
-                        productRepository.save(product);
-                    }
-                }
-                order.cancel();
-                break;
             default:
                 throw new RuntimeException("Invalid status: " + status);
         }
@@ -165,22 +199,25 @@ public class OrderService {
         return orderRepository.save(order);
     }
 
+    // Отмена с возвратом товаров на склад одним оператором
     @Transactional
-    public void deleteOrder(Long orderId) {
-        Order order = orderRepository.findById(orderId)
+    @AwaitStatusHistory
+    public Order cancelOrder(Long orderId) {
+        if (cancellationService.cancel(List.of(orderId), OrderCancellationService.CANCELLABLE).isEmpty()) {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new RuntimeException("Order not found"));
+            throw new IllegalStateException("Нельзя отменить заказ в статусе " + order.getStatus());
+        }
+        return orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
-        
-        if (!order.canBeModified()) {
+    }
+
+    @Transactional
+    public void deleteOrder(Long orderId) {
+        if (cancellationService.deletePending(List.of(orderId)).isEmpty()) {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new RuntimeException("Order not found"));
             throw new RuntimeException("Cannot delete order in status: " + order.getStatus());
         }
-        
-        // Возвращаем товары на склад
-        for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            product.setQuantity(product.getQuantity() + item.getQuantity());
-            productRepository.save(product);
-        }
-        
-        orderRepository.delete(order);
     }
 }
@@ -0,0 +1,351 @@
+package com.onlinestore.service;
+
+import com.onlinestore.security.UserDetailsImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentTypePreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// История статусов заказов (order_status_history) без синхронного INSERT на каждый переход.
+// Переход попадает в lock-free очередь после commit своей транзакции и пишется пачкой -
+// одним многострочным INSERT - при накоплении flush-size переходов или раз в flush-interval-ms.
+// Режим app.orders.status-history.durability:
+//   ASYNC - вызывающий не ждет записи; при падении приложения буфер теряется;
+//   SYNC  - вызывающий ждет, пока его переход записан; параллельные переходы
+//           пишутся одним INSERT (групповой коммит). Ждет не afterCommit (там соединение
+//           транзакции еще занято), а граница ожидания снаружи транзакции: метод
+//           с @AwaitStatusHistory (OrderStatusHistorySyncAspect) или openSyncScope/closeSyncScope.
+// Переходы удаленных к моменту записи заказов отбрасываются. Пачка, не записанная
+// max-attempts раз подряд, пишется по строке: строки, которые не пишутся и по одной,
+// отбрасываются и не держат соседние переходы.
+@Service
+public class OrderStatusHistoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusHistoryService.class);
+
+    public enum Durability { ASYNC, SYNC }
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO order_status_history (order_id, old_status, new_status, changed_by, changed_at) " +
+            "SELECT v.order_id, v.old_status, v.new_status, v.changed_by, v.changed_at FROM (VALUES ";
+
+    private static final String ROW =
+            "(CAST(? AS BIGINT), CAST(? AS VARCHAR(20)), CAST(? AS VARCHAR(20)), CAST(? AS BIGINT), CAST(? AS TIMESTAMP))";
+
+    private static final int[] ROW_TYPES = {Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.TIMESTAMP};
+
+    private static final String INSERT_SUFFIX =
+            ") AS v(order_id, old_status, new_status, changed_by, changed_at) " +
+            "WHERE EXISTS (SELECT 1 FROM orders o WHERE o.id = v.order_id)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.orders.status-history.durability:ASYNC}")
+    private Durability durability = Durability.ASYNC;
+
+    // Строк в одном INSERT и порог немедленной записи
+    @Value("${app.orders.status-history.flush-size:500}")
+    private int flushSize = 500;
+
+    // Больше переходов в буфере не держим - новые отбрасываются
+    @Value("${app.orders.status-history.max-buffer:100000}")
+    private int maxBuffer = 100000;
+
+    // Неудачных записей пачки, после которых ее строки пишутся по одной
+    @Value("${app.orders.status-history.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    // Сколько ждет вызывающий в режиме SYNC
+    @Value("${app.orders.status-history.sync-timeout-ms:5000}")
+    private long syncTimeoutMs = 5000;
+
+    private final Queue<Transition> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // SYNC: переходы, которых ждет граница ожидания текущего потока
+    private final ThreadLocal<List<CompletableFuture<Void>>> syncScope = new ThreadLocal<>();
+
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-status-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        flusher.shutdownNow();
+    }
+
+    // Переход статуса; внутри транзакции попадает в буфер только после ее commit.
+    // Future завершается, когда переход записан (или отброшен: откат, переполнение буфера)
+    public CompletableFuture<Void> record(Long orderId, String oldStatus, String newStatus) {
+        Transition transition = new Transition(orderId, oldStatus, newStatus, currentUserId(), LocalDateTime.now());
+        CompletableFuture<Void> written = transition.written;
+        List<CompletableFuture<Void>> scope = durability == Durability.SYNC ? syncScope.get() : null;
+        if (scope != null) {
+            scope.add(written);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(transition);
+            // Вне транзакции соединение не занято - без внешней границы ждем здесь
+            if (durability == Durability.SYNC && scope == null) {
+                await(orderId, written);
+            }
+            return written;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(transition);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    written.complete(null);
+                }
+            }
+        });
+        return written;
+    }
+
+    // Граница ожидания SYNC вне транзакции; false - не нужна (ASYNC, уже открыта
+    // или идет транзакция - тогда ждет внешняя граница), closeSyncScope не вызывается
+    public boolean openSyncScope() {
+        if (durability != Durability.SYNC || syncScope.get() != null
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        syncScope.set(new ArrayList<>());
+        return true;
+    }
+
+    // Дождаться записи переходов, закоммиченных после openSyncScope (не дольше sync-timeout-ms)
+    public void closeSyncScope() {
+        List<CompletableFuture<Void>> scope = syncScope.get();
+        syncScope.remove();
+        if (scope == null || scope.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(scope.toArray(new CompletableFuture[0]))
+                    .get(syncTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Статусы уже изменены и закоммичены - переходы останутся в буфере до следующей записи
+            logger.warn("{} order status transitions are not written yet: {}", scope.size(), e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getBuffered() {
+        return buffered.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // Записать накопленное; вызывается по расписанию, по порогу и при остановке
+    @Scheduled(fixedDelayString = "${app.orders.status-history.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        // Не больше, чем было в буфере на входе: неудачные пачки возвращаются в очередь
+        int limit = buffered.get();
+        List<Transition> failed = new ArrayList<>();
+        List<Transition> batch = new ArrayList<>(Math.min(limit, flushSize));
+        Transition transition;
+        while (limit-- > 0 && (transition = queue.poll()) != null) {
+            batch.add(transition);
+            if (batch.size() == flushSize) {
+                write(batch, failed);
+                batch = new ArrayList<>(flushSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch, failed);
+        }
+        queue.addAll(failed);
+    }
+
+    // Только ставит в очередь: вызывается и из afterCommit, где ждать нельзя
+    private void enqueue(Transition transition) {
+        if (buffered.incrementAndGet() > maxBuffer) {
+            buffered.decrementAndGet();
+            transition.written.complete(null);
+            if (dropped.incrementAndGet() % 1000 == 1) {
+                logger.warn("Order status history buffer is full, {} transitions dropped", dropped.get());
+            }
+            return;
+        }
+        queue.offer(transition);
+        if (durability == Durability.SYNC || buffered.get() >= flushSize) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                try {
+                    flush();
+                } catch (Exception e) {
+                    logger.error("Order status history flush failed: ", e);
+                }
+            });
+        }
+    }
+
+    private void await(Long orderId, CompletableFuture<Void> done) {
+        try {
+            done.get(syncTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Статус уже изменен и закоммичен - переход останется в буфере до следующей записи
+            logger.warn("Order {} status history is not written yet: {}", orderId, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<Transition> batch, List<Transition> failed) {
+        try {
+            insert(batch);
+        } catch (Exception e) {
+            // Ожидающие получают ошибку сразу; повторная запись future уже не меняет
+            boolean split = false;
+            for (Transition transition : batch) {
+                transition.written.completeExceptionally(e);
+                split |= ++transition.attempts >= maxAttempts;
+            }
+            if (split && batch.size() > 1) {
+                logger.error("Failed to write {} order status transitions, writing them one by one: ",
+                        batch.size(), e);
+                writeOneByOne(batch, failed);
+            } else {
+                logger.error("Failed to write {} order status transitions, will retry: ", batch.size(), e);
+                failed.addAll(batch);
+            }
+            return;
+        }
+        markWritten(batch);
+    }
+
+    // Строки, не записанные по одной, пока соседние пишутся, отбрасываются.
+    // Не записалась ни одна - скорее недоступна БД, чем битые строки: повторим все
+    private void writeOneByOne(List<Transition> batch, List<Transition> failed) {
+        List<Transition> rejected = new ArrayList<>();
+        for (Transition transition : batch) {
+            try {
+                insert(List.of(transition));
+            } catch (Exception e) {
+                rejected.add(transition);
+                continue;
+            }
+            markWritten(List.of(transition));
+        }
+        if (rejected.size() == batch.size()) {
+            failed.addAll(rejected);
+            return;
+        }
+        if (!rejected.isEmpty()) {
+            buffered.addAndGet(-rejected.size());
+            dropped.addAndGet(rejected.size());
+            logger.error("{} order status transitions cannot be written and are dropped", rejected.size());
+        }
+    }
+
+    private void insert(List<Transition> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + INSERT_SUFFIX.length()
+                + batch.size() * (ROW.length() + 2));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[batch.size() * ROW_TYPES.length];
+        // Явные типы: для null-параметров драйвер не запрашивает метаданные
+        int[] types = new int[args.length];
+        int i = 0;
+        for (Transition transition : batch) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW);
+            System.arraycopy(ROW_TYPES, 0, types, i, ROW_TYPES.length);
+            args[i++] = transition.orderId;
+            args[i++] = transition.oldStatus;
+            args[i++] = transition.newStatus;
+            args[i++] = transition.changedBy;
+            args[i++] = Timestamp.valueOf(transition.changedAt);
+        }
+        sql.append(INSERT_SUFFIX);
+        jdbcTemplate.update(sql.toString(), new ArgumentTypePreparedStatementSetter(args, types));
+    }
+
+    private void markWritten(List<Transition> batch) {
+        buffered.addAndGet(-batch.size());
+        written.addAndGet(batch.size());
+        for (Transition transition : batch) {
+            transition.written.complete(null);
+        }
+    }
+
+    private Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl) {
+            return ((UserDetailsImpl) authentication.getPrincipal()).getId();
+        }
+        return null;
+    }
+
+    static final class Transition {
+        final Long orderId;
+        final String oldStatus;
+        final String newStatus;
+        final Long changedBy;
+        final LocalDateTime changedAt;
+        // Завершается после записи
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+        // Неудачных записей; меняется только в flush()
+        int attempts;
+
+        Transition(Long orderId, String oldStatus, String newStatus, Long changedBy, LocalDateTime changedAt) {
+            this.orderId = orderId;
+            this.oldStatus = oldStatus;
+            this.newStatus = newStatus;
+            this.changedBy = changedBy;
+            this.changedAt = changedAt;
+        }
+    }
+}
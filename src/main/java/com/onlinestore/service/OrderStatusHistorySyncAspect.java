@@ -0,0 +1,33 @@
+package com.onlinestore.service;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Граница ожидания истории статусов в режиме SYNC вокруг методов с @AwaitStatusHistory.
+// Порядок выше TransactionInterceptor: ожидание идет после commit и возврата
+// соединения в пул, но до того, как вызывающий получит результат
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OrderStatusHistorySyncAspect {
+
+    @Autowired
+    private OrderStatusHistoryService historyService;
+
+    @Around("@annotation(com.onlinestore.service.AwaitStatusHistory)")
+    public Object awaitHistory(ProceedingJoinPoint call) throws Throwable {
+        if (!historyService.openSyncScope()) {
+            return call.proceed();
+        }
+        try {
+            return call.proceed();
+        } finally {
+            historyService.closeSyncScope();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.onlinestore.service;
+
+import com.onlinestore.model.Order;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+import java.util.Objects;
+
+// Entity listener заказа: запоминает статус, с которым заказ загружен или записан,
+// и сообщает OrderStatusHistoryService о каждой смене статуса при записи в БД -
+// через Order.process/ship/deliver/cancel или прямой setStatus
+public class OrderStatusListener {
+
+    // Без сервиса (срезы контекста в тестах) история просто не пишется
+    @Autowired
+    private ObjectProvider<OrderStatusHistoryService> historyService;
+
+    @PostLoad
+    public void loaded(Order order) {
+        order.setPersistedStatus(order.getStatus());
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(Order order) {
+        if (Objects.equals(order.getPersistedStatus(), order.getStatus())) {
+            return;
+        }
+        OrderStatusHistoryService service = historyService != null ? historyService.getIfAvailable() : null;
+        if (service != null) {
+            service.record(order.getId(), order.getPersistedStatus(), order.getStatus());
+        }
+        order.setPersistedStatus(order.getStatus());
+    }
+}
@@ -0,0 +1,240 @@
+package com.onlinestore.service;
+
+import com.onlinestore.dto.ProductBulkRequest;
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Category;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.CategoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Массовые изменения товаров одним SQL на диапазон id вместо загрузки сущностей.
+// Диапазон [min(id), max(id)] режется на чанки по chunkSize id, каждый чанк -
+// отдельная транзакция с UPDATE/DELETE ... RETURNING; по возвращенным строкам
+// после коммита чанка обновляются кэши и индексы (ProductChangedEvent).
+@Service
+public class ProductBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductBulkService.class);
+
+    private static final String RETURNING =
+            " RETURNING id, name, description, price, quantity, is_active, created_at, updated_at";
+
+    // Категория вместе со всеми подкатегориями
+    private static final String IN_CATEGORY_TREE =
+            "id IN (SELECT pc.product_id FROM product_categories pc WHERE pc.category_id IN (" +
+            "WITH RECURSIVE tree AS (SELECT id FROM categories WHERE id = :categoryId " +
+            "UNION ALL SELECT c.id FROM categories c JOIN tree t ON c.parent_id = t.id) " +
+            "SELECT id FROM tree))";
+
+    private static final RowMapper<Product> PRODUCT_ROW = (rs, rowNum) -> {
+        Product product = new Product(rs.getString("name"), rs.getString("description"),
+                Money.of(rs.getBigDecimal("price")), rs.getInt("quantity"));
+        product.setId(rs.getLong("id"));
+        product.setIsActive(rs.getBoolean("is_active"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        product.setCreatedAt(createdAt != null ? createdAt.toLocalDateTime() : null);
+        product.setUpdatedAt(updatedAt != null ? updatedAt.toLocalDateTime() : null);
+        return product;
+    };
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.products.bulk.chunk-size:5000}")
+    private int chunkSize = 5000;
+
+    // Возвращает affected (сумма по чанкам), chunks и errors (чанки, откатившиеся целиком)
+    public Map<String, Object> execute(ProductBulkRequest request) {
+        if (request.getOperation() == null) {
+            throw new IllegalArgumentException("Operation is required");
+        }
+        if (request.getOperation() == ProductBulkRequest.Operation.DELETE && !request.hasFilter()) {
+            throw new IllegalArgumentException("DELETE requires a filter");
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String where = buildFilter(request, params);
+        String sql = buildStatement(request, params) + " WHERE id BETWEEN :fromId AND :toId" + where + RETURNING;
+
+        long affected = 0;
+        int chunks = 0;
+        List<String> errors = new ArrayList<>();
+        long[] range = idRange(request);
+        for (long from = range[0]; from <= range[1]; from += chunkSize) {
+            long to = Math.min(from + chunkSize - 1, range[1]);
+            params.addValue("fromId", from).addValue("toId", to);
+            chunks++;
+            try {
+                affected += runChunk(request.getOperation(), sql, params);
+            } catch (DataAccessException e) {
+                errors.add("ids " + from + "-" + to + ": " + e.getMostSpecificCause().getMessage());
+                logger.warn("Bulk {} chunk [{}, {}] rolled back: {}", request.getOperation(), from, to, e.getMessage());
+            }
+        }
+        logger.info("Bulk {} finished: {} rows in {} chunks, {} failed chunks",
+                request.getOperation(), affected, chunks, errors.size());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("operation", request.getOperation());
+        result.put("affected", affected);
+        result.put("chunks", chunks);
+        result.put("errors", errors);
+        return result;
+    }
+
+    private int runChunk(ProductBulkRequest.Operation operation, String sql, MapSqlParameterSource params) {
+        Integer count = transactionTemplate.execute(status -> {
+            List<Product> rows = jdbcTemplate.query(sql, params, PRODUCT_ROW);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            if (operation == ProductBulkRequest.Operation.DELETE) {
+                List<Long> ids = new ArrayList<>(rows.size());
+                rows.forEach(product -> ids.add(product.getId()));
+                eventPublisher.publishEvent(ProductChangedEvent.deleted(ids));
+            } else {
+                eventPublisher.publishEvent(ProductChangedEvent.saved(rows));
+            }
+            return rows.size();
+        });
+        return count != null ? count : 0;
+    }
+
+    private String buildStatement(ProductBulkRequest request, MapSqlParameterSource params) {
+        BigDecimal value = request.getValue();
+        switch (request.getOperation()) {
+            case PRICE_PERCENT:
+                requireValue(value);
+                if (value.compareTo(BigDecimal.valueOf(-100)) <= 0) {
+                    throw new IllegalArgumentException("Percentage must be greater than -100");
+                }
+                params.addValue("value", value);
+                return "UPDATE products SET price = ROUND(CAST(price * (1 + :value / 100.0) AS NUMERIC), 2), " +
+                        "updated_at = CURRENT_TIMESTAMP";
+            case PRICE_ADD:
+                requireValue(value);
+                params.addValue("value", value);
+                return "UPDATE products SET price = price + :value, updated_at = CURRENT_TIMESTAMP";
+            case QUANTITY_SET:
+                requireValue(value);
+                if (value.signum() < 0) {
+                    throw new IllegalArgumentException("Quantity must not be negative");
+                }
+                params.addValue("value", value.intValueExact());
+                return "UPDATE products SET quantity = :value, updated_at = CURRENT_TIMESTAMP";
+            case QUANTITY_ADD:
+                requireValue(value);
+                params.addValue("value", value.intValueExact());
+                return "UPDATE products SET quantity = GREATEST(quantity + :value, 0), updated_at = CURRENT_TIMESTAMP";
+            case ACTIVATE:
+            case DEACTIVATE:
+                params.addValue("active", request.getOperation() == ProductBulkRequest.Operation.ACTIVATE);
+                return "UPDATE products SET is_active = :active, updated_at = CURRENT_TIMESTAMP";
+            case DELETE:
+                return "DELETE FROM products";
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + request.getOperation());
+        }
+    }
+
+    private String buildFilter(ProductBulkRequest request, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder();
+        Long categoryId = request.getCategoryId();
+        if (categoryId == null && request.getCategory() != null) {
+            // Неизвестная категория - ни одного товара (id -1 не существует)
+            categoryId = categoryRepository.findByName(request.getCategory()).map(Category::getId).orElse(-1L);
+        }
+        if (categoryId != null) {
+            where.append(" AND ").append(IN_CATEGORY_TREE);
+            params.addValue("categoryId", categoryId);
+        }
+        if (request.getMinPrice() != null) {
+            where.append(" AND price >= :minPrice");
+            params.addValue("minPrice", request.getMinPrice());
+        }
+        if (request.getMaxPrice() != null) {
+            where.append(" AND price <= :maxPrice");
+            params.addValue("maxPrice", request.getMaxPrice());
+        }
+        if (request.getMinQuantity() != null) {
+            where.append(" AND quantity >= :minQuantity");
+            params.addValue("minQuantity", request.getMinQuantity());
+        }
+        if (request.getMaxQuantity() != null) {
+            where.append(" AND quantity <= :maxQuantity");
+            params.addValue("maxQuantity", request.getMaxQuantity());
+        }
+        if (request.getIds() != null) {
+            where.append(" AND id IN (:ids)");
+            params.addValue("ids", request.getIds().isEmpty()
+                    ? Collections.singletonList(-1L) : request.getIds());
+        }
+        switch (request.getOperation()) {
+            case PRICE_ADD:
+                // Цена не может стать меньше минимальной - такие товары не меняются
+                where.append(" AND price + :value >= 0.01");
+                break;
+            case ACTIVATE:
+            case DEACTIVATE:
+                // Без пустых записей для товаров, уже имеющих нужный статус
+                where.append(" AND is_active <> :active");
+                break;
+            default:
+                break;
+        }
+        return where.toString();
+    }
+
+    // [min, max] id, которые нужно обойти; пустой диапазон - {1, 0}
+    private long[] idRange(ProductBulkRequest request) {
+        if (request.getIds() != null) {
+            if (request.getIds().isEmpty()) {
+                return new long[] {1, 0};
+            }
+            return new long[] {Collections.min(request.getIds()), Collections.max(request.getIds())};
+        }
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM products", new MapSqlParameterSource());
+        Number min = (Number) bounds.get("min_id");
+        Number max = (Number) bounds.get("max_id");
+        if (min == null || max == null) {
+            return new long[] {1, 0};
+        }
+        return new long[] {min.longValue(), max.longValue()};
+    }
+
+    private static void requireValue(BigDecimal value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value is required for this operation");
+        }
+    }
+}
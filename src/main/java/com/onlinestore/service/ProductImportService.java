@@ -0,0 +1,257 @@
+package com.onlinestore.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlinestore.dto.ImportChunkReport;
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Потоковый импорт каталога поставщика (CSV или NDJSON).
+// Файл читается построчно, валидные строки копятся в чанк и вставляются одним
+// JDBC batch в отдельной транзакции - в памяти никогда не больше одного чанка.
+// Ошибочные строки пропускаются и попадают в отчет чанка.
+@Service
+public class ProductImportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    // Ограничение на число сообщений об ошибках в отчете одного чанка
+    private static final int MAX_ERRORS_PER_CHUNK = 100;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO products (name, description, price, quantity, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Импорт из input; progress вызывается после коммита (или отката) каждого чанка.
+    // Возвращает итог: totalRows, imported, failed, chunks
+    public Map<String, Object> importProducts(Reader input, Format format, int chunkSize,
+                                              Consumer<ImportChunkReport> progress) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        Map<String, Integer> columns = null;
+        long lineNumber = 0;
+        long totalRows = 0;
+        long imported = 0;
+        long failed = 0;
+        int chunkNumber = 0;
+
+        List<Object[]> batch = new ArrayList<>(chunkSize);
+        ImportChunkReport report = null;
+        int rowsInChunk = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                columns = parseHeader(line);
+                continue;
+            }
+            if (report == null) {
+                report = new ImportChunkReport(++chunkNumber, lineNumber);
+            }
+            totalRows++;
+            rowsInChunk++;
+            try {
+                batch.add(format == Format.CSV ? parseCsvRow(line, columns) : parseJsonRow(line));
+            } catch (IllegalArgumentException | IOException e) {
+                report.setFailed(report.getFailed() + 1);
+                addError(report, "line " + lineNumber + ": " + e.getMessage());
+            }
+            report.setLastLine(lineNumber);
+
+            if (rowsInChunk == chunkSize) {
+                flush(batch, report);
+                imported += report.getImported();
+                failed += report.getFailed();
+                progress.accept(report);
+                batch = new ArrayList<>(chunkSize);
+                report = null;
+                rowsInChunk = 0;
+            }
+        }
+        if (report != null) {
+            flush(batch, report);
+            imported += report.getImported();
+            failed += report.getFailed();
+            progress.accept(report);
+        }
+
+        if (imported > 0) {
+            // id вставленных строк неизвестны - индексы и кэши перечитывают каталог
+            eventPublisher.publishEvent(ProductChangedEvent.reloaded());
+        }
+        logger.info("Product import finished: {} rows, {} imported, {} failed", totalRows, imported, failed);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("totalRows", totalRows);
+        summary.put("imported", imported);
+        summary.put("failed", failed);
+        summary.put("chunks", chunkNumber);
+        return summary;
+    }
+
+    private void flush(List<Object[]> batch, ImportChunkReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch));
+            report.setImported(batch.size());
+        } catch (DataAccessException e) {
+            // Чанк откатывается целиком, следующие чанки продолжают импорт
+            report.setFailed(report.getFailed() + batch.size());
+            addError(report, "chunk rolled back: " + e.getMostSpecificCause().getMessage());
+            logger.warn("Import chunk {} rolled back: {}", report.getChunk(), e.getMessage());
+        }
+    }
+
+    private static void addError(ImportChunkReport report, String error) {
+        if (report.getErrors().size() < MAX_ERRORS_PER_CHUNK) {
+            report.getErrors().add(error);
+        }
+    }
+
+    // ============= PARSING =============
+
+    private static Map<String, Integer> parseHeader(String line) {
+        List<String> names = splitCsv(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("price") || !columns.containsKey("quantity")) {
+            throw new IllegalArgumentException("CSV header must contain name, price and quantity columns");
+        }
+        return columns;
+    }
+
+    private static Object[] parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsv(line);
+        return toRow(column(values, columns, "name"), column(values, columns, "description"),
+                column(values, columns, "price"), column(values, columns, "quantity"));
+    }
+
+    private Object[] parseJsonRow(String line) throws IOException {
+        JsonNode node = objectMapper.readTree(line);
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("expected a JSON object");
+        }
+        return toRow(text(node, "name"), text(node, "description"), text(node, "price"), text(node, "quantity"));
+    }
+
+    // Те же ограничения, что у ProductDto
+    private static Object[] toRow(String name, String description, String price, String quantity) {
+        if (name == null || name.trim().length() < 3 || name.trim().length() > 100) {
+            throw new IllegalArgumentException("name must be 3-100 characters");
+        }
+        if (description != null && description.length() > 500) {
+            throw new IllegalArgumentException("description must be at most 500 characters");
+        }
+        Money parsedPrice;
+        int parsedQuantity;
+        try {
+            parsedPrice = Money.parse(price);
+            parsedQuantity = Integer.parseInt(quantity.trim());
+        } catch (NumberFormatException | ArithmeticException | NullPointerException e) {
+            throw new IllegalArgumentException("price and quantity must be numbers");
+        }
+        if (parsedPrice.getMinorUnits() < 1 || parsedPrice.getMinorUnits() > 99999999) {
+            throw new IllegalArgumentException("price must be between 0.01 and 999999.99");
+        }
+        if (parsedQuantity < 0 || parsedQuantity > 999999) {
+            throw new IllegalArgumentException("quantity must be between 0 and 999999");
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return new Object[] {name.trim(), description, parsedPrice.toBigDecimal(), parsedQuantity, now, now};
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // Одна строка CSV (RFC 4180): поля в кавычках могут содержать запятые и "" вместо ".
+    // Переводы строк внутри полей не поддерживаются - запись должна быть в одной строке
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
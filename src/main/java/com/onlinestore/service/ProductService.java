@@ -1,17 +1,46 @@
 package com.onlinestore.service;
 
+import com.onlinestore.cache.CatalogVersion;
+import com.onlinestore.cache.ProductCache;
+import com.onlinestore.cache.ProductStatistics;
+import com.onlinestore.dto.ProductBulkRequest;
+import com.onlinestore.dto.ProductPageDto;
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Money;
 import com.onlinestore.model.Product;
 import com.onlinestore.repository.ProductRepository;
+import com.onlinestore.search.FacetQuery;
+import com.onlinestore.search.FacetResult;
+import com.onlinestore.search.ProductFacetIndex;
+import com.onlinestore.search.ProductSearchIndex;
+import com.onlinestore.search.ProductSuggestIndex;
+import com.onlinestore.search.TrigramSimilarity;
+import com.onlinestore.util.CursorCodec;
+import com.onlinestore.util.JsonStreamWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
@@ -19,45 +48,247 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;  // Только одно объявление!
 
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private ProductStatistics statistics;
+
+    @Autowired
+    private ProductBulkService bulkService;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private ProductSuggestIndex suggestIndex;
+
+    @Autowired
+    private ProductFacetIndex facetIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JsonStreamWriter jsonStreamWriter;
+
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+
+    @Value("${app.search.fuzzy.threshold:0.3}")
+    private double fuzzyThreshold;
+
     // Получить все товары
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
 
-    // Получить товар по ID
+    // Весь каталог JSON-массивом в out (порядок по id), в своей read-only транзакции
+    @Transactional(readOnly = true)
+    public void writeAllProducts(OutputStream out) throws IOException {
+        try (Stream<Product> products = productRepository.streamAll()) {
+            jsonStreamWriter.writeArray(out, products, Function.identity());
+        }
+    }
+
+    // Получить товар по ID (через кэш; возвращается копия, для записи - saveProduct)
     public Product getProductById(Long id) {
-        return productRepository.findById(id).orElse(null);
+        return productCache.get(id, key -> productRepository.findById(key).orElse(null));
+    }
+
+    // ETag всего каталога: меняется при любом изменении товаров
+    public String getCatalogETag() {
+        return catalogVersion.eTag();
+    }
+
+    // Строгий ETag товара по времени последнего изменения
+    // (без updatedAt - по версии каталога)
+    public String getProductETag(Product product) {
+        if (product.getUpdatedAt() == null) {
+            return "\"" + product.getId() + "-c" + catalogVersion.get() + "\"";
+        }
+        long millis = product.getUpdatedAt().atZone(ZoneOffset.UTC).toInstant().toEpochMilli();
+        return "\"" + product.getId() + "-" + millis + "\"";
     }
 
-    // Поиск товаров
+    public Map<String, Object> getCacheStats() {
+        return productCache.getStats();
+    }
+
+    // Поиск товаров: пересечение списков из инвертированного индекса,
+    // пока индекс не построен - поиск в БД
     public List<Product> searchProducts(String query) {
-        return productRepository.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(query, query);
+        if (!searchIndex.isReady()) {
+            return productRepository.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(query, query);
+        }
+        return getProductsByIds(searchIndex.search(query));
+    }
+
+    // Полнотекстовый поиск с ранжированием по ts_rank, не более limit товаров.
+    // На H2 (тесты) ранжирования нет - отдаем первые limit результатов индекса
+    public List<Product> searchProducts(String query, int limit) {
+        if (isPostgres()) {
+            return productRepository.fullTextSearch(query, limit);
+        }
+        List<Product> found = searchProducts(query);
+        return found.size() > limit ? found.subList(0, limit) : found;
+    }
+
+    // Нечеткий поиск по названию (опечатки): похожесть по триграммам не ниже порога,
+    // не более limit самых похожих. На H2 похожесть считается в памяти
+    @Transactional(readOnly = true)
+    public List<Product> fuzzySearchProducts(String query, int limit) {
+        if (isPostgres()) {
+            productRepository.setSimilarityThreshold(String.valueOf(fuzzyThreshold));
+            return productRepository.fuzzySearchByName(query, limit);
+        }
+        Set<String> queryTrigrams = TrigramSimilarity.trigrams(query);
+        return productRepository.findAll().stream()
+                .map(p -> new AbstractMap.SimpleEntry<>(p,
+                        TrigramSimilarity.similarity(queryTrigrams, TrigramSimilarity.trigrams(p.getName()))))
+                .filter(e -> e.getValue() >= fuzzyThreshold)
+                .sorted(Map.Entry.<Product, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(e -> e.getKey().getId()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
     }
 
-    // Получить товары по категории
+    // Автодополнение: до 10 названий, начинающихся с prefix, по убыванию продаж
+    public List<String> suggestProductNames(String prefix) {
+        return suggestIndex.suggest(prefix);
+    }
+
+    private boolean isPostgres() {
+        return datasourceUrl != null && datasourceUrl.startsWith("jdbc:postgresql:");
+    }
+
+    // Получить товары по названию категории (включая подкатегории),
+    // пока индекс фасетов не построен - запросом к БД
     public List<Product> getProductsByCategory(String category) {
-        // Если у вас есть поле category, раскомментируйте:
-        // return productRepository.findByCategory(category);
-        return productRepository.findAll(); // временно
+        if (!facetIndex.isReady()) {
+            return productRepository.findByCategoryTree(category);
+        }
+        Long categoryId = facetIndex.findCategoryId(category);
+        if (categoryId == null) {
+            return Collections.emptyList();
+        }
+        FacetResult result = facetIndex.search(new FacetQuery(categoryId, null, null, null));
+        return getProductsByIds(result.getProductIds());
+    }
+
+    // Фильтрация каталога по категории, цене и наличию со счетчиками фасетов
+    public FacetResult searchCatalog(FacetQuery query) {
+        return facetIndex.search(query);
+    }
+
+    // Товары по списку id в порядке возрастания id
+    public List<Product> getProductsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Product> products = productRepository.findAllById(ids);
+        products.sort((a, b) -> a.getId().compareTo(b.getId()));
+        return products;
     }
 
     // Получить товары в ценовом диапазоне
-    public List<Product> getProductsByPriceRange(Double min, Double max) {
+    public List<Product> getProductsByPriceRange(Money min, Money max) {
         return productRepository.findByPriceBetween(min, max);
     }
 
+    // Keyset-пагинация каталога. sort: id, price_asc, price_desc, newest.
+    // Курсор хранит ключ последнего товара страницы, поэтому любая страница
+    // читается по индексу так же быстро, как первая
+    public ProductPageDto getProductsPage(String sort, String cursor, int size) {
+        String order = sort == null ? "id" : sort.toLowerCase();
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Product> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            switch (order) {
+                case "id":
+                    rows = productRepository.findAllByOrderByIdAsc(limit);
+                    break;
+                case "price_asc":
+                    rows = productRepository.findAllByOrderByPriceAscIdAsc(limit);
+                    break;
+                case "price_desc":
+                    rows = productRepository.findAllByOrderByPriceDescIdDesc(limit);
+                    break;
+                case "newest":
+                    rows = productRepository.findAllByOrderByCreatedAtDescIdDesc(limit);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown sort: " + sort);
+            }
+        } else {
+            String[] key = CursorCodec.decode(cursor, 3);
+            if (!key[0].equals(order)) {
+                throw new IllegalArgumentException("Cursor was issued for sort " + key[0]);
+            }
+            try {
+                Long lastId = Long.valueOf(key[2]);
+                switch (order) {
+                    case "id":
+                        rows = productRepository.findPageAfterId(lastId, limit);
+                        break;
+                    case "price_asc":
+                        rows = productRepository.findPageAfterPriceAsc(Money.parse(key[1]), lastId, limit);
+                        break;
+                    case "price_desc":
+                        rows = productRepository.findPageAfterPriceDesc(Money.parse(key[1]), lastId, limit);
+                        break;
+                    case "newest":
+                        rows = productRepository.findPageAfterCreatedAtDesc(LocalDateTime.parse(key[1]), lastId, limit);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown sort: " + sort);
+                }
+            } catch (NumberFormatException | ArithmeticException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<Product> products = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Product last = products.get(products.size() - 1);
+            nextCursor = CursorCodec.encode(order, sortKey(order, last), String.valueOf(last.getId()));
+        }
+        return new ProductPageDto(products, nextCursor, hasMore);
+    }
+
+    private static String sortKey(String order, Product product) {
+        switch (order) {
+            case "price_asc":
+            case "price_desc":
+                return String.valueOf(product.getPrice());
+            case "newest":
+                return product.getCreatedAt().toString();
+            default:
+                return "";
+        }
+    }
+
     // Сохранить товар
     public Product saveProduct(Product product) {
         if (product.getCreatedAt() == null) {
             product.setCreatedAt(LocalDateTime.now());
         }
         product.setUpdatedAt(LocalDateTime.now());
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(saved));
+        return saved;
     }
 
     // Удалить товар
     public void deleteProduct(Long id) {
         productRepository.deleteById(id);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(Collections.singletonList(id)));
     }
 
     // ============= NEW METHODS FOR ADMIN =============
@@ -76,106 +307,144 @@ public class ProductService {
             }
             product.setUpdatedAt(LocalDateTime.now());
         });
-        return productRepository.saveAll(products);
+        List<Product> saved = productRepository.saveAll(products);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(saved));
+        return saved;
     }
 
     // Обновить количество
     @Transactional
     public Product updateQuantity(Long id, Integer quantity) {
-        Product product = getProductById(id);
-        if (product == null) {
-            throw new RuntimeException("Product not found with id: " + id);
-        }
+        Product product = loadForUpdate(id);
         product.setQuantity(quantity);
         product.setUpdatedAt(LocalDateTime.now());
-        return productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(product));
+        return product;
     }
 
     // Обновить цену
     @Transactional
     public Product updatePrice(Long id, BigDecimal price) {
-        Product product = getProductById(id);
-        if (product == null) {
-            throw new RuntimeException("Product not found with id: " + id);
-        }
-        product.setPrice(price.doubleValue());
+        Product product = loadForUpdate(id);
+        product.setPrice(Money.of(price));
         product.setUpdatedAt(LocalDateTime.now());
-        return productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(product));
+        return product;
     }
 
     // Активировать товар
     @Transactional
     public Product activateProduct(Long id) {
-        Product product = getProductById(id);
-        if (product == null) {
-            throw new RuntimeException("Product not found with id: " + id);
-        }
-        // Если есть поле isActive:
-        // product.setIsActive(true);
+        Product product = loadForUpdate(id);
+        product.setIsActive(true);
         product.setUpdatedAt(LocalDateTime.now());
-        return productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(product));
+        return product;
     }
 
     // Деактивировать товар
     @Transactional
     public Product deactivateProduct(Long id) {
-        Product product = getProductById(id);
+        Product product = loadForUpdate(id);
+        product.setIsActive(false);
+        product.setUpdatedAt(LocalDateTime.now());
+        eventPublisher.publishEvent(ProductChangedEvent.saved(product));
+        return product;
+    }
+
+    // Обновить название, описание, цену и остаток; null - товара нет
+    @Transactional
+    public Product updateProduct(Long id, Product changes) {
+        Product product = productRepository.findByIdForUpdate(id).orElse(null);
         if (product == null) {
-            throw new RuntimeException("Product not found with id: " + id);
+            return null;
         }
-        // Если есть поле isActive:
-        // product.setIsActive(false);
+        product.setName(changes.getName());
+        product.setDescription(changes.getDescription());
+        product.setPrice(changes.getPrice());
+        product.setQuantity(changes.getQuantity());
         product.setUpdatedAt(LocalDateTime.now());
-        return productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(product));
+        return product;
     }
 
-    // Удалить несколько товаров
+    // Изменить остаток на delta (не ниже нуля); null - товара нет
     @Transactional
+    public Product adjustQuantity(Long id, int delta) {
+        Product product = productRepository.findByIdForUpdate(id).orElse(null);
+        if (product == null) {
+            return null;
+        }
+        product.setQuantity(Math.max(product.getQuantity() + delta, 0));
+        product.setUpdatedAt(LocalDateTime.now());
+        eventPublisher.publishEvent(ProductChangedEvent.saved(product));
+        return product;
+    }
+
+    // Изменения пишутся в управляемую заблокированную строку, а не в копию из ProductCache:
+    // в кэше может быть устаревший quantity, и merge вернул бы его поверх списаний заказов
+    private Product loadForUpdate(Long id) {
+        return productRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+    }
+
+    // Удалить несколько товаров (одним DELETE на диапазон id)
     public void deleteAllProducts(List<Long> ids) {
-        productRepository.deleteAllById(ids);
+        ProductBulkRequest request = new ProductBulkRequest(ProductBulkRequest.Operation.DELETE, null);
+        request.setIds(ids);
+        bulkService.execute(request);
     }
 
-    // Массовое обновление цен
-    @Transactional
+    // Массовая операция по фильтру, см. ProductBulkService
+    public Map<String, Object> bulkUpdate(ProductBulkRequest request) {
+        return bulkService.execute(request);
+    }
+
+    // Массовое обновление цен на percentage процентов (в категории, если указана)
     public int bulkUpdatePrices(BigDecimal percentage, String category) {
-        List<Product> products = productRepository.findAll();
-        
-        int count = 0;
-        for (Product product : products) {
-            double newPrice = product.getPrice() * (1 + percentage.doubleValue() / 100);
-            product.setPrice(newPrice);
-            product.setUpdatedAt(LocalDateTime.now());
-            count++;
-        }
-        productRepository.saveAll(products);
-        return count;
+        ProductBulkRequest request = new ProductBulkRequest(ProductBulkRequest.Operation.PRICE_PERCENT, percentage);
+        request.setCategory(category);
+        return ((Number) bulkService.execute(request).get("affected")).intValue();
     }
 
     // ============= STATISTICS METHODS =============
 
+    // Срез статистики: из ProductStatistics за O(1), пока он не построен - одним агрегатным запросом
+    public ProductStatistics.Snapshot getStatistics() {
+        if (statistics.isReady()) {
+            return statistics.snapshot();
+        }
+        Object[] row = productRepository.aggregateStatistics(statistics.getLowStockThreshold()).get(0);
+        return new ProductStatistics.Snapshot(
+                ((Number) row[0]).longValue(),
+                ((Money) row[1]).getMinorUnits(),
+                Money.of((BigDecimal) row[2]).getMinorUnits(),
+                ((Number) row[3]).longValue(),
+                ((Number) row[4]).longValue(),
+                ((Number) row[5]).longValue(),
+                ((Number) row[6]).longValue());
+    }
+
     public long getTotalCount() {
-        return productRepository.count();
+        return getStatistics().getCount();
     }
 
-    public double getTotalInventoryValue() {
-        List<Product> products = productRepository.findAll();
-        return products.stream()
-                .mapToDouble(p -> p.getPrice() * p.getQuantity())
-                .sum();
+    public Money getTotalInventoryValue() {
+        return getStatistics().getTotalValue();
     }
 
-    public double getAveragePrice() {
-        return productRepository.findAll().stream()
-                .mapToDouble(Product::getPrice)
-                .average()
-                .orElse(0.0);
+    public Money getAveragePrice() {
+        return getStatistics().getAveragePrice();
     }
 
     public long getOutOfStockCount() {
-        return productRepository.findByQuantity(0).size();
+        return getStatistics().getOutOfStock();
     }
 
     public long getLowStockCount(int threshold) {
-        return productRepository.findByQuantityLessThan(threshold).size();
+        if (threshold == statistics.getLowStockThreshold()) {
+            return getStatistics().getLowStock();
+        }
+        return productRepository.countByQuantityLessThan(threshold);
     }
 }
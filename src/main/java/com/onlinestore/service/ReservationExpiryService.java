@@ -0,0 +1,133 @@
+package com.onlinestore.service;
+
+import com.onlinestore.event.OrderPlacedEvent;
+import com.onlinestore.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Срок резервирования остатков PENDING-заказом. Сроки держатся в памяти в иерархическом
+// колесе таймеров (TimingWheel), при старте восстанавливаются из БД по PENDING-заказам.
+// Раз в тик наступившие сроки отменяются пачками через OrderCancellationService: заказы,
+// которые все еще PENDING, отменяются с возвратом остатков одним оператором. Заказ, ушедший из PENDING
+// раньше срока, из колеса не удаляется - при срабатывании он просто не найдется.
+@Service
+public class ReservationExpiryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationExpiryService.class);
+
+    private static final int WHEEL_SIZE = 64;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderCancellationService cancellationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 0 - резервирование бессрочное
+    @Value("${app.orders.reservation.ttl-minutes:30}")
+    private long ttlMinutes = 30;
+
+    @Value("${app.orders.reservation.batch-size:200}")
+    private int batchSize = 200;
+
+    private final TimingWheel wheel;
+
+    // Сроки наступили, но отмена не удалась - повтор на следующем тике
+    private final List<Long> overdue = new ArrayList<>();
+
+    private final AtomicLong expired = new AtomicLong();
+
+    public ReservationExpiryService(@Value("${app.orders.reservation.tick-ms:1000}") long tickMs) {
+        this.wheel = new TimingWheel(tickMs, WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (ttlMinutes <= 0) {
+            return;
+        }
+        try {
+            List<Object[]> rows = orderRepository.findPendingCreatedAt();
+            for (Object[] row : rows) {
+                track((Long) row[0], (LocalDateTime) row[1]);
+            }
+            logger.info("Reservation expiry rebuilt: {} pending orders", rows.size());
+        } catch (Exception e) {
+            logger.error("Failed to rebuild reservation expiry: ", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        if (ttlMinutes <= 0) {
+            return;
+        }
+        for (int i = 0; i < event.getOrderIds().size(); i++) {
+            track(event.getOrderIds().get(i), event.getCreatedAt().get(i));
+        }
+    }
+
+    public synchronized void track(Long orderId, LocalDateTime createdAt) {
+        LocalDateTime created = createdAt != null ? createdAt : LocalDateTime.now();
+        long deadline = created.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                + TimeUnit.MINUTES.toMillis(ttlMinutes);
+        if (!wheel.add(orderId, deadline)) {
+            overdue.add(orderId);
+        }
+    }
+
+    public synchronized int getTrackedCount() {
+        return wheel.size() + overdue.size();
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.reservation.tick-ms:1000}")
+    public void expire() {
+        List<Long> due;
+        synchronized (this) {
+            due = new ArrayList<>(overdue);
+            overdue.clear();
+            wheel.advance(System.currentTimeMillis(), due::add);
+        }
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Long> batch = due.subList(from, Math.min(due.size(), from + batchSize));
+            try {
+                Integer cancelled = transactionTemplate.execute(status -> cancelExpired(batch));
+                if (cancelled != null && cancelled > 0) {
+                    expired.addAndGet(cancelled);
+                    logger.info("Cancelled {} orders with expired reservation", cancelled);
+                }
+            } catch (Exception e) {
+                logger.error("Failed to cancel {} expired orders, will retry: ", batch.size(), e);
+                synchronized (this) {
+                    overdue.addAll(batch);
+                }
+            }
+        }
+    }
+
+    int cancelExpired(List<Long> orderIds) {
+        return cancellationService.cancel(orderIds, OrderCancellationService.PENDING).size();
+    }
+}
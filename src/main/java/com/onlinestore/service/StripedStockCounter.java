@@ -0,0 +1,79 @@
+package com.onlinestore.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Остаток товара, разложенный по нескольким атомарным счетчикам (полосам).
+// Потоки начинают с разных полос, поэтому CAS на горячем товаре почти не конфликтуют.
+// Если ни в одной полосе нет нужного количества, оно собирается из нескольких.
+// Сборка идет под монитором счетчика: иначе два параллельных сбора держат части
+// остатка друг у друга и оба получают отказ при достаточном общем остатке.
+final class StripedStockCounter {
+
+    private final AtomicIntegerArray stripes;
+
+    StripedStockCounter(int quantity, int stripeCount) {
+        stripes = new AtomicIntegerArray(Math.max(1, stripeCount));
+        int length = stripes.length();
+        for (int i = 0; i < length; i++) {
+            stripes.set(i, quantity / length + (i < quantity % length ? 1 : 0));
+        }
+    }
+
+    boolean tryTake(int quantity) {
+        int length = stripes.length();
+        int start = ThreadLocalRandom.current().nextInt(length);
+
+        // Быстрый путь: все количество из одной полосы
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            for (int value = stripes.get(index); value >= quantity; value = stripes.get(index)) {
+                if (stripes.compareAndSet(index, value, value - quantity)) {
+                    return true;
+                }
+            }
+        }
+
+        return takeAcross(quantity, start);
+    }
+
+    // Медленный путь: собираем по частям, при нехватке возвращаем взятое.
+    // Быстрый путь частей не держит, поэтому отказ здесь - реальная нехватка
+    private synchronized boolean takeAcross(int quantity, int start) {
+        int length = stripes.length();
+        int[] taken = new int[length];
+        int remaining = quantity;
+        for (int i = 0; i < length && remaining > 0; i++) {
+            int index = (start + i) % length;
+            for (int value = stripes.get(index); value > 0; value = stripes.get(index)) {
+                int part = Math.min(value, remaining);
+                if (stripes.compareAndSet(index, value, value - part)) {
+                    taken[index] = part;
+                    remaining -= part;
+                    break;
+                }
+            }
+        }
+        if (remaining == 0) {
+            return true;
+        }
+        for (int index = 0; index < length; index++) {
+            if (taken[index] > 0) {
+                stripes.addAndGet(index, taken[index]);
+            }
+        }
+        return false;
+    }
+
+    void put(int quantity) {
+        stripes.addAndGet(ThreadLocalRandom.current().nextInt(stripes.length()), quantity);
+    }
+
+    int available() {
+        int sum = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            sum += stripes.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,113 @@
+package com.onlinestore.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+// Иерархическое колесо таймеров. Уровень 0 - wheelSize ведер по tickMs, каждый следующий
+// уровень создается по требованию и покрывает весь предыдущий одним ведром.
+// Добавление - O(1), продвижение - O(1) на тик плюс перенос ведра верхнего уровня вниз
+// раз в оборот нижнего. Срабатывает не раньше срока и не позже чем через tickMs после него.
+// Не потокобезопасно: вызывающий синхронизирует доступ сам.
+final class TimingWheel {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final List<Entry>[] buckets;
+    // Начало текущего тика, кратно tickMs
+    private long currentTime;
+    private TimingWheel overflow;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.buckets = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.currentTime = startMs - startMs % tickMs;
+    }
+
+    // false - срок уже прошел, таймер не добавлен
+    boolean add(long id, long deadlineMs) {
+        if (!add(new Entry(id, deadlineMs))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    // Продвинуть время до nowMs; id с наступившим сроком передаются в expired
+    void advance(long nowMs, LongConsumer expired) {
+        if (size == 0) {
+            // Пустое колесо - перескакиваем простой без прохода по тикам
+            align(nowMs - nowMs % tickMs);
+            return;
+        }
+        while (currentTime + tickMs <= nowMs) {
+            List<Entry> bucket = buckets[index(currentTime)];
+            for (Entry entry : bucket) {
+                expired.accept(entry.id);
+            }
+            size -= bucket.size();
+            bucket.clear();
+            moveTo(currentTime + tickMs);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private boolean add(Entry entry) {
+        if (entry.deadline < currentTime) {
+            return false;
+        }
+        if (entry.deadline < currentTime + interval) {
+            buckets[index(entry.deadline)].add(entry);
+            return true;
+        }
+        if (overflow == null) {
+            overflow = new TimingWheel(interval, wheelSize, currentTime);
+        }
+        return overflow.add(entry);
+    }
+
+    private int index(long time) {
+        return (int) ((time / tickMs) % wheelSize);
+    }
+
+    // Начало нового оборота: ведро верхнего уровня с этим интервалом опускается сюда
+    private void moveTo(long time) {
+        currentTime = time;
+        if (overflow != null && time % interval == 0) {
+            overflow.moveTo(time);
+            List<Entry> bucket = overflow.buckets[overflow.index(time)];
+            for (Entry entry : bucket) {
+                add(entry);
+            }
+            bucket.clear();
+        }
+    }
+
+    private void align(long time) {
+        currentTime = time;
+        if (overflow != null) {
+            overflow.align(time - time % interval);
+        }
+    }
+
+    private static final class Entry {
+        final long id;
+        final long deadline;
+
+        Entry(long id, long deadline) {
+            this.id = id;
+            this.deadline = deadline;
+        }
+    }
+}
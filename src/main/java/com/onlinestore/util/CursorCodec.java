@@ -0,0 +1,33 @@
+package com.onlinestore.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Непрозрачный курсор для keyset-пагинации: части ключа, склеенные через '|', в base64url
+public final class CursorCodec {
+
+    private static final String SEPARATOR = "|";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(String... parts) {
+        String raw = String.join(SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Бросает IllegalArgumentException, если курсор поврежден или число частей не совпадает
+    public static String[] decode(String cursor, int expectedParts) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        String[] parts = raw.split("\\|", -1);
+        if (parts.length != expectedParts) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return parts;
+    }
+}
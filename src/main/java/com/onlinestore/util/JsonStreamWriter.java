@@ -0,0 +1,62 @@
+package com.onlinestore.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Потоковая запись больших списков в JSON-массив: строка из БД -> DTO -> сразу в ответ.
+// Каждые BATCH_SIZE строк буфер сбрасывается в сокет, а persistence context очищается,
+// поэтому память не растет с числом строк
+@Component
+public class JsonStreamWriter {
+
+    public static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Нет в @WebMvcTest - тогда просто не очищаем контекст
+    @Autowired(required = false)
+    private EntityManager entityManager;
+
+    public <T> void writeArray(HttpServletResponse response, Stream<T> rows,
+                               Function<? super T, ?> mapper) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        writeArray(response.getOutputStream(), rows, mapper);
+    }
+
+    public <T> void writeArray(OutputStream out, Stream<T> rows,
+                               Function<? super T, ?> mapper) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            int written = 0;
+            Iterator<T> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(mapper.apply(iterator.next()));
+                if (++written % BATCH_SIZE == 0) {
+                    generator.flush();
+                    clearPersistenceContext();
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private void clearPersistenceContext() {
+        if (entityManager != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.clear();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- =============================================
+-- V11: Частичный индекс по PENDING-заказам: по нему при старте
+-- восстанавливаются сроки резервирования, а просроченные заказы отменяются
+-- =============================================
+
+CREATE INDEX IF NOT EXISTS idx_orders_pending_created_at ON orders(created_at) WHERE status = 'PENDING';
@@ -0,0 +1,53 @@
+-- =============================================
+-- V12: Пересчет total_amount заказа один раз на оператор, а не на каждую строку.
+-- Построчные триггеры из V1 на заказ из N позиций делали N агрегаций SUM и
+-- N UPDATE одной и той же строки orders. Триггеры уровня оператора видят все
+-- затронутые строки в таблицах переходов (PostgreSQL 10+) и пересчитывают каждый
+-- затронутый заказ один раз. С reWriteBatchedInserts batch INSERT позиций
+-- приходит одним оператором - пересчет один на пачку заказов.
+-- =============================================
+
+DROP TRIGGER IF EXISTS update_order_total_on_insert ON order_items;
+DROP TRIGGER IF EXISTS update_order_total_on_update ON order_items;
+DROP TRIGGER IF EXISTS update_order_total_on_delete ON order_items;
+DROP FUNCTION IF EXISTS update_order_total_amount();
+
+-- Пересчет сумм заказов, затронутых оператором (строки - в таблицах переходов new_items/old_items)
+CREATE OR REPLACE FUNCTION recalculate_order_totals()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE orders o
+        SET total_amount = COALESCE((SELECT SUM(i.price * i.quantity) FROM order_items i WHERE i.order_id = o.id), 0)
+        WHERE o.id IN (SELECT DISTINCT order_id FROM new_items);
+    ELSIF TG_OP = 'UPDATE' THEN
+        UPDATE orders o
+        SET total_amount = COALESCE((SELECT SUM(i.price * i.quantity) FROM order_items i WHERE i.order_id = o.id), 0)
+        WHERE o.id IN (SELECT order_id FROM new_items UNION SELECT order_id FROM old_items);
+    ELSE
+        UPDATE orders o
+        SET total_amount = COALESCE((SELECT SUM(i.price * i.quantity) FROM order_items i WHERE i.order_id = o.id), 0)
+        WHERE o.id IN (SELECT DISTINCT order_id FROM old_items);
+    END IF;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Таблицы переходов допускают только одно событие на триггер - поэтому три триггера
+CREATE TRIGGER recalculate_order_totals_on_insert
+    AFTER INSERT ON order_items
+    REFERENCING NEW TABLE AS new_items
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION recalculate_order_totals();
+
+CREATE TRIGGER recalculate_order_totals_on_update
+    AFTER UPDATE ON order_items
+    REFERENCING OLD TABLE AS old_items NEW TABLE AS new_items
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION recalculate_order_totals();
+
+CREATE TRIGGER recalculate_order_totals_on_delete
+    AFTER DELETE ON order_items
+    REFERENCING OLD TABLE AS old_items
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION recalculate_order_totals();
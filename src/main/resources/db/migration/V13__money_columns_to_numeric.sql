@@ -0,0 +1,12 @@
+-- =============================================
+-- V13: Денежные колонки - точный NUMERIC(10,2), как order_items.price.
+-- products.price и orders.total_amount созданы Hibernate из Double (double precision);
+-- приложение хранит суммы в копейках (Money) и пишет их через MoneyConverter.
+-- Значения округляются до копейки; индекс idx_products_price_id перестраивается.
+-- =============================================
+
+ALTER TABLE products
+    ALTER COLUMN price TYPE NUMERIC(10, 2) USING ROUND(price::numeric, 2);
+
+ALTER TABLE orders
+    ALTER COLUMN total_amount TYPE NUMERIC(10, 2) USING ROUND(total_amount::numeric, 2);
@@ -0,0 +1,12 @@
+-- =============================================
+-- V14: products.created_at NOT NULL. Старые строки без даты создания
+-- ломали сортировку "newest" (NULL первыми при DESC, keyset-условие их пропускало).
+-- Дата берется из updated_at, иначе строка считается самой старой.
+-- =============================================
+
+UPDATE products
+SET created_at = COALESCE(updated_at, TIMESTAMP '1970-01-01 00:00:00')
+WHERE created_at IS NULL;
+
+ALTER TABLE products ALTER COLUMN created_at SET DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE products ALTER COLUMN created_at SET NOT NULL;
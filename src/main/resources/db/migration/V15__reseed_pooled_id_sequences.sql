@@ -0,0 +1,18 @@
+-- =============================================
+-- V15: Пересев последовательностей id после V7.
+-- V7 заводил последовательность как setval(MAX(id) + 1, false): первый nextval
+-- возвращал MAX(id) + 1, и pooled-оптимизатор выдавал блок MAX(id) - 48 .. MAX(id) + 1,
+-- пересекающийся с существующими строками. Значение поднимается так, чтобы следующий
+-- блок начинался выше и существующих id, и уже выданных блоков.
+-- =============================================
+
+DO $$
+DECLARE
+    t TEXT;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['products', 'users', 'orders', 'order_items'] LOOP
+        EXECUTE format(
+            'SELECT setval(%1$L, GREATEST((SELECT MAX(id) FROM %2$I), (SELECT last_value FROM %1$I), 1), true)',
+            t || '_id_seq', t);
+    END LOOP;
+END $$;
@@ -0,0 +1,8 @@
+-- =============================================
+-- V16: Экземпляр приложения, ведущий flash-продажу.
+-- Счетчик остатка живет в памяти одного экземпляра; остальные по этой строке
+-- видят, что товар продается не из products. Строки без owner при запуске
+-- забирает первый поднявшийся экземпляр
+-- =============================================
+
+ALTER TABLE flash_sales ADD COLUMN IF NOT EXISTS owner VARCHAR(255);
@@ -0,0 +1,16 @@
+-- =============================================
+-- V4: Полнотекстовый поиск по товарам
+-- =============================================
+
+-- Вектор считается самой БД при вставке/обновлении (PostgreSQL 12+).
+-- russian - со стеммингом, simple - точные словоформы (артикулы, бренды латиницей)
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('russian', coalesce(description, '')), 'B') ||
+        setweight(to_tsvector('simple', coalesce(description, '')), 'B')
+    ) STORED;
+
+-- GIN индекс для оператора @@
+CREATE INDEX IF NOT EXISTS idx_products_search_vector ON products USING GIN (search_vector);
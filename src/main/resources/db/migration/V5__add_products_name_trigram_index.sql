@@ -0,0 +1,8 @@
+-- =============================================
+-- V5: Нечеткий поиск по названию товара (pg_trgm)
+-- =============================================
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- GIN индекс обслуживает оператор % (similarity >= pg_trgm.similarity_threshold)
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm ON products USING GIN (name gin_trgm_ops);
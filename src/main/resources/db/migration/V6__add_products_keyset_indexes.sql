@@ -0,0 +1,7 @@
+-- =============================================
+-- V6: Индексы для keyset-пагинации каталога
+-- =============================================
+
+-- Сортировки (price, id) и (created_at, id); для (id) достаточно первичного ключа
+CREATE INDEX IF NOT EXISTS idx_products_price_id ON products(price, id);
+CREATE INDEX IF NOT EXISTS idx_products_created_at_id ON products(created_at, id);
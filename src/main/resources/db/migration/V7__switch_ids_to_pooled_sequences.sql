@@ -0,0 +1,26 @@
+-- =============================================
+-- V7: Последовательности с шагом 50 для pooled-оптимизатора Hibernate
+-- =============================================
+-- Hibernate берет nextval один раз на 50 id и раздает их из памяти, поэтому
+-- INSERT больше не нужен для получения id и может идти JDBC batch.
+-- DEFAULT nextval(...) у колонок остается: вставки в обход JPA (импорт)
+-- получают значение-границу блока, с которым pooled-диапазоны не пересекаются.
+
+DO $$
+DECLARE
+    t TEXT;
+    seq TEXT;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['products', 'users', 'orders', 'order_items'] LOOP
+        seq := pg_get_serial_sequence(t, 'id');
+        IF seq IS NULL THEN
+            -- Колонка без последовательности: создаем и привязываем
+            EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I OWNED BY %I.id', t || '_id_seq', t);
+            EXECUTE format('SELECT setval(%L, COALESCE((SELECT MAX(id) FROM %I), 0) + 1, false)', t || '_id_seq', t);
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET DEFAULT nextval(%L)', t, t || '_id_seq');
+        ELSIF seq <> 'public.' || t || '_id_seq' THEN
+            EXECUTE format('ALTER SEQUENCE %s RENAME TO %I', seq, t || '_id_seq');
+        END IF;
+        EXECUTE format('ALTER SEQUENCE %I INCREMENT BY 50', t || '_id_seq');
+    END LOOP;
+END $$;
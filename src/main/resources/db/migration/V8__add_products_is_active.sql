@@ -0,0 +1,5 @@
+-- =============================================
+-- V8: Флаг активности товара (активация/деактивация, массовые операции)
+-- =============================================
+
+ALTER TABLE products ADD COLUMN IF NOT EXISTS is_active BOOLEAN NOT NULL DEFAULT true;
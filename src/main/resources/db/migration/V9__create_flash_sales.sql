@@ -0,0 +1,10 @@
+-- =============================================
+-- V9: Товары в режиме flash-продажи. Строка живет, пока режим включен:
+-- по ней после аварийного рестарта остаток сверяется с заказами
+-- =============================================
+
+CREATE TABLE IF NOT EXISTS flash_sales (
+    product_id BIGINT PRIMARY KEY REFERENCES products(id) ON DELETE CASCADE,
+    initial_quantity INTEGER NOT NULL,
+    started_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,81 @@
+package com.onlinestore.cache;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductStatisticsTest {
+    
+    @Mock
+    private ProductRepository productRepository;
+    
+    @InjectMocks
+    private ProductStatistics statistics;
+    
+    @BeforeEach
+    void setUp() {
+        when(productRepository.findAllStockRows()).thenReturn(Arrays.asList(
+                new Object[] {1L, Money.of(100.10), 10},
+                new Object[] {2L, Money.of(200.20), 0}
+        ));
+        statistics.rebuild();
+    }
+    
+    @Test
+    void testRebuildFromDatabase() {
+        ProductStatistics.Snapshot snapshot = statistics.snapshot();
+        
+        assertThat(statistics.isReady()).isTrue();
+        assertThat(snapshot.getCount()).isEqualTo(2);
+        assertThat(snapshot.getTotalValue()).isEqualTo(Money.of(1001.0));
+        assertThat(snapshot.getAveragePrice()).isEqualTo(Money.of(150.15));
+        assertThat(snapshot.getTotalQuantity()).isEqualTo(10);
+        assertThat(snapshot.getInStock()).isEqualTo(1);
+        assertThat(snapshot.getOutOfStock()).isEqualTo(1);
+        assertThat(snapshot.getLowStock()).isEqualTo(1);
+    }
+    
+    @Test
+    void testSavedReplacesOldContribution() {
+        statistics.onProductChanged(ProductChangedEvent.saved(List.of(
+                product(2L, 50.0, 3),
+                product(3L, 10.0, 20))));
+        
+        ProductStatistics.Snapshot snapshot = statistics.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(3);
+        assertThat(snapshot.getTotalValue()).isEqualTo(Money.of(1001.0 + 150.0 + 200.0));
+        assertThat(snapshot.getTotalQuantity()).isEqualTo(33);
+        assertThat(snapshot.getInStock()).isEqualTo(3);
+        assertThat(snapshot.getOutOfStock()).isZero();
+        assertThat(snapshot.getLowStock()).isEqualTo(1);
+    }
+    
+    @Test
+    void testDeletedRemovesContribution() {
+        statistics.onProductChanged(ProductChangedEvent.deleted(List.of(1L, 42L)));
+        
+        ProductStatistics.Snapshot snapshot = statistics.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(1);
+        assertThat(snapshot.getTotalValue()).isEqualTo(Money.ZERO);
+        assertThat(snapshot.getAveragePrice()).isEqualTo(Money.of(200.20));
+        assertThat(snapshot.getInStock()).isZero();
+    }
+    
+    private Product product(Long id, Double price, Integer quantity) {
+        Product product = new Product("Товар " + id, null, Money.of(price), quantity);
+        product.setId(id);
+        return product;
+    }
+}
@@ -2,10 +2,18 @@ package com.onlinestore.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.onlinestore.TestConfig;
+import com.onlinestore.cache.CatalogSnapshot;
+import com.onlinestore.cache.ProductStatistics;
 import com.onlinestore.dto.ProductDto;
+import com.onlinestore.exception.InsufficientStockException;
+import com.onlinestore.model.Money;
 import com.onlinestore.model.Product;
 import com.onlinestore.model.User;
 import com.onlinestore.model.Order;
+import com.onlinestore.service.AsyncOrderService;
+import com.onlinestore.service.IdempotencyService;
+import com.onlinestore.service.OrderCancellationService;
+import com.onlinestore.service.OrderIntakeService;
 import com.onlinestore.service.ProductService;
 import com.onlinestore.service.UserService;
 import com.onlinestore.repository.OrderRepository;
@@ -20,12 +28,18 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -45,12 +59,27 @@ public class SimpleControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private OrderIntakeService orderIntakeService;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private AsyncOrderService asyncOrderService;
+
     @MockBean
     private OrderRepository orderRepository;
 
     @MockBean
     private ProductRepository productRepository;
 
+    @MockBean
+    private CatalogSnapshot catalogSnapshot;
+
+    @MockBean
+    private OrderCancellationService cancellationService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -68,7 +97,7 @@ public class SimpleControllerTest {
         product1.setId(1L);
         product1.setName("Test Product 1");
         product1.setDescription("Description 1");
-        product1.setPrice(99.99);
+        product1.setPrice(Money.of(99.99));
         product1.setQuantity(10);
         product1.setCreatedAt(now);
         product1.setUpdatedAt(now);
@@ -77,7 +106,7 @@ public class SimpleControllerTest {
         product2.setId(2L);
         product2.setName("Search Result Product");
         product2.setDescription("This product should be found by search");
-        product2.setPrice(49.99);
+        product2.setPrice(Money.of(49.99));
         product2.setQuantity(5);
         product2.setCreatedAt(now);
         product2.setUpdatedAt(now);
@@ -90,7 +119,7 @@ public class SimpleControllerTest {
         order = new Order();
         order.setId(1L);
         order.setUser(user);
-        order.setTotalAmount(99.99);
+        order.setTotalAmount(Money.of(99.99));
         order.setStatus("PENDING");
         order.setOrderDate(now);
     }
@@ -110,7 +139,10 @@ public class SimpleControllerTest {
     @Test
     void testGetAllProducts() throws Exception {
         List<Product> products = Arrays.asList(product1, product2);
-        when(productService.getAllProducts()).thenReturn(products);
+        doAnswer(invocation -> {
+            objectMapper.writeValue((OutputStream) invocation.getArgument(0), products);
+            return null;
+        }).when(productService).writeAllProducts(any(OutputStream.class));
 
         mockMvc.perform(get("/products"))
                 .andExpect(status().isOk())
@@ -118,6 +150,29 @@ public class SimpleControllerTest {
                 .andExpect(jsonPath("$[0].name").value("Test Product 1"));
     }
 
+    @Test
+    void testGetAllProducts_FromSnapshot() throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(Arrays.asList(product1, product2));
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(json);
+        }
+        when(catalogSnapshot.current())
+                .thenReturn(new CatalogSnapshot.Snapshot(json, gzip.toByteArray(), "\"catalog-3\""));
+
+        mockMvc.perform(get("/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$[1].id").value(2));
+
+        mockMvc.perform(get("/products").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("ETag", "\"catalog-3\""))
+                .andExpect(content().bytes(gzip.toByteArray()));
+        verify(productService, never()).writeAllProducts(any());
+    }
+
     @Test
     void testGetProductById() throws Exception {
         when(productService.getProductById(1L)).thenReturn(product1);
@@ -128,6 +183,27 @@ public class SimpleControllerTest {
                 .andExpect(jsonPath("$.name").value("Test Product 1"));
     }
 
+    @Test
+    void testGetProductById_NotModified() throws Exception {
+        when(productService.getProductById(1L)).thenReturn(product1);
+        when(productService.getProductETag(product1)).thenReturn("\"1-100\"");
+
+        mockMvc.perform(get("/products/1").header("If-None-Match", "\"1-100\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testGetAllProducts_NotModified() throws Exception {
+        when(productService.getCatalogETag()).thenReturn("\"catalog-7\"");
+
+        mockMvc.perform(get("/products").header("If-None-Match", "\"catalog-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"catalog-7\""));
+
+        verify(productService, never()).writeAllProducts(any());
+    }
+
     @Test
     void testGetProductById_NotFound() throws Exception {
         when(productService.getProductById(99L)).thenReturn(null);
@@ -138,9 +214,8 @@ public class SimpleControllerTest {
 
     @Test
     void testSearchProducts() throws Exception {
-        // Настраиваем мок для getAllProducts (так как searchProducts использует его)
-        List<Product> allProducts = Arrays.asList(product1, product2);
-        when(productService.getAllProducts()).thenReturn(allProducts);
+        // Поиск идет через индекс в ProductService, без загрузки всего каталога
+        when(productService.searchProducts("Search")).thenReturn(List.of(product2));
 
         // Выполняем поиск
         mockMvc.perform(get("/products/search")
@@ -149,8 +224,38 @@ public class SimpleControllerTest {
                 .andExpect(jsonPath("$[0].id").value(2))
                 .andExpect(jsonPath("$[0].name").value("Search Result Product"));
         
-        // Проверяем, что getAllProducts был вызван
-        verify(productService, times(1)).getAllProducts();
+        verify(productService, times(1)).searchProducts("Search");
+        verify(productService, never()).getAllProducts();
+    }
+
+    @Test
+    void testSearchProducts_FullText() throws Exception {
+        when(productService.searchProducts("search", 10)).thenReturn(List.of(product2));
+
+        mockMvc.perform(get("/products/search")
+                .param("keyword", "search")
+                .param("mode", "fulltext")
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(2));
+    }
+
+    @Test
+    void testSearchProducts_UnknownMode() throws Exception {
+        mockMvc.perform(get("/products/search")
+                .param("keyword", "search")
+                .param("mode", "unknown"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSuggestProducts() throws Exception {
+        when(productService.suggestProductNames("sea")).thenReturn(List.of("Search Result Product"));
+
+        mockMvc.perform(get("/products/suggest")
+                .param("prefix", "sea"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("Search Result Product"));
     }
 
     @Test
@@ -170,8 +275,7 @@ public class SimpleControllerTest {
 
     @Test
     void testSearchProducts_NoResults() throws Exception {
-        // Настраиваем мок для getAllProducts
-        when(productService.getAllProducts()).thenReturn(List.of());
+        when(productService.searchProducts("Nonexistent")).thenReturn(List.of());
 
         // Поиск с ключевым словом должен вернуть пустой массив
         mockMvc.perform(get("/products/search")
@@ -180,17 +284,19 @@ public class SimpleControllerTest {
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$").isEmpty());
         
-        verify(productService, times(1)).getAllProducts();
+        verify(productService, times(1)).searchProducts("Nonexistent");
     }
 
     @Test
     void testGetStats() throws Exception {
-        List<Product> products = Arrays.asList(product1, product2);
-        when(productService.getAllProducts()).thenReturn(products);
+        when(productService.getStatistics())
+                .thenReturn(new ProductStatistics.Snapshot(2, 30000, 500000, 25, 2, 0, 0));
 
         mockMvc.perform(get("/stats"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.totalProducts").value(2));
+                .andExpect(jsonPath("$.totalProducts").value(2))
+                .andExpect(jsonPath("$.totalValue").value("5000.00"))
+                .andExpect(jsonPath("$.averagePrice").value("150.00"));
     }
 
     @Test
@@ -209,9 +315,7 @@ public class SimpleControllerTest {
 
     @Test
     void testCreateOrder() throws Exception {
-        when(userService.getUserById(1L)).thenReturn(user);
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderIntakeService.place(any(), anyLong())).thenReturn(order);
         
         String orderJson = "{\"userId\":1,\"shippingAddress\":\"Test Address\",\"items\":[{\"productId\":1,\"quantity\":2}]}";
         
@@ -224,7 +328,8 @@ public class SimpleControllerTest {
 
     @Test
     void testCreateOrder_UserNotFound() throws Exception {
-        when(userService.getUserById(99L)).thenReturn(null);
+        when(orderIntakeService.place(any(), anyLong()))
+                .thenThrow(new ExecutionException(new IllegalArgumentException("User not found: 99")));
         
         String orderJson = "{\"userId\":99,\"shippingAddress\":\"Test Address\",\"items\":[{\"productId\":1,\"quantity\":2}]}";
         
@@ -236,8 +341,8 @@ public class SimpleControllerTest {
 
     @Test
     void testCreateOrder_ProductNotFound() throws Exception {
-        when(userService.getUserById(1L)).thenReturn(user);
-        when(productRepository.findById(99L)).thenReturn(Optional.empty());
+        when(orderIntakeService.place(any(), anyLong()))
+                .thenThrow(new ExecutionException(new InsufficientStockException(99L, null, null, 2)));
         
         String orderJson = "{\"userId\":1,\"shippingAddress\":\"Test Address\",\"items\":[{\"productId\":99,\"quantity\":2}]}";
         
@@ -249,15 +354,44 @@ public class SimpleControllerTest {
 
     @Test
     void testCreateOrder_InsufficientStock() throws Exception {
-        when(userService.getUserById(1L)).thenReturn(user);
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
+        when(orderIntakeService.place(any(), anyLong()))
+                .thenThrow(new ExecutionException(new InsufficientStockException(1L, "Product 1", 10, 100)));
         
         String orderJson = "{\"userId\":1,\"shippingAddress\":\"Test Address\",\"items\":[{\"productId\":1,\"quantity\":100}]}";
         
         mockMvc.perform(post("/api/orders")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(orderJson))
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.available").value(10))
+                .andExpect(jsonPath("$.requested").value(100));
+    }
+
+    @Test
+    void testCreateOrderAsync() throws Exception {
+        when(asyncOrderService.accept(any())).thenReturn(new AsyncOrderService.Status("req-1"));
+        
+        String orderJson = "{\"userId\":1,\"shippingAddress\":\"Test Address\",\"items\":[{\"productId\":1,\"quantity\":2}]}";
+        
+        mockMvc.perform(post("/api/orders/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(orderJson))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/orders/async/req-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    @Test
+    void testCreateOrderAsync_QueueFull() throws Exception {
+        when(asyncOrderService.accept(any())).thenThrow(new RejectedExecutionException("full"));
+        
+        String orderJson = "{\"userId\":1,\"shippingAddress\":\"Test Address\",\"items\":[{\"productId\":1,\"quantity\":2}]}";
+        
+        mockMvc.perform(post("/api/orders/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(orderJson))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
     }
 
     @Test
@@ -281,11 +415,20 @@ public class SimpleControllerTest {
 
     @Test
     void testCancelOrder() throws Exception {
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(productRepository.save(any(Product.class))).thenReturn(product1);
+        when(cancellationService.cancel(List.of(1L), OrderCancellationService.CANCELLABLE)).thenReturn(List.of(1L));
         
         mockMvc.perform(patch("/api/orders/1/cancel"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("CANCELLED"));
     }
+
+    @Test
+    void testCancelShippedOrderIsRejected() throws Exception {
+        order.setStatus("SHIPPED");
+        when(cancellationService.cancel(List.of(1L), OrderCancellationService.CANCELLABLE)).thenReturn(List.of());
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        
+        mockMvc.perform(patch("/api/orders/1/cancel"))
+                .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,46 @@
+package com.onlinestore.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testArithmeticIsExactInMinorUnits() {
+        Money sum = Money.of(0.1).plus(Money.of(0.2));
+
+        assertThat(sum.getMinorUnits()).isEqualTo(30);
+        assertThat(sum).isEqualTo(Money.parse("0.30"));
+        assertThat(Money.parse("19.99").times(3)).isEqualTo(Money.of(59.97));
+        assertThat(Money.of(new BigDecimal("10.005"))).isEqualTo(Money.ofMinor(1001));
+        assertThat(Money.ofMinor(5).minus(Money.ofMinor(10)).toString()).isEqualTo("-0.05");
+        assertThat(Money.ofMinor(123450).toString()).isEqualTo("1234.50");
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE).times(2)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void testJsonRoundTrip() throws Exception {
+        assertThat(objectMapper.writeValueAsString(Map.of("price", Money.parse("99.9"))))
+                .isEqualTo("{\"price\":99.90}");
+
+        assertThat(objectMapper.readValue("99.99", Money.class)).isEqualTo(Money.ofMinor(9999));
+        assertThat(objectMapper.readValue("100", Money.class)).isEqualTo(Money.ofMinor(10000));
+        assertThat(objectMapper.readValue("\"0.10\"", Money.class)).isEqualTo(Money.ofMinor(10));
+    }
+
+    @Test
+    void testOrderTotalIsSummedInMinorUnits() {
+        Product product = new Product("Товар", null, Money.parse("0.10"), 100);
+        Order order = new Order();
+        order.addItem(new OrderItem(order, product, 3));
+        order.addItem(new OrderItem(order, product, 7));
+
+        assertThat(order.getTotalAmount()).isEqualTo(Money.parse("1.00"));
+    }
+}
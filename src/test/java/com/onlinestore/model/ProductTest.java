@@ -15,7 +15,7 @@ class ProductTest {
         product.setId(1L);
         product.setName("Test Product");
         product.setDescription("Test Description");
-        product.setPrice(100.0);
+        product.setPrice(Money.of(100.0));
         product.setQuantity(10);
     }
     
@@ -25,18 +25,18 @@ class ProductTest {
         assertThat(product.getId()).isEqualTo(1L);
         assertThat(product.getName()).isEqualTo("Test Product");
         assertThat(product.getDescription()).isEqualTo("Test Description");
-        assertThat(product.getPrice()).isEqualTo(100.0);
+        assertThat(product.getPrice()).isEqualTo(Money.of(100.0));
         assertThat(product.getQuantity()).isEqualTo(10);
     }
     
     @Test
     void testProductSettersAndGetters() {
         product.setName("Updated Product");
-        product.setPrice(150.0);
+        product.setPrice(Money.of(150.0));
         product.setQuantity(5);
         
         assertThat(product.getName()).isEqualTo("Updated Product");
-        assertThat(product.getPrice()).isEqualTo(150.0);
+        assertThat(product.getPrice()).isEqualTo(Money.of(150.0));
         assertThat(product.getQuantity()).isEqualTo(5);
     }
     
@@ -45,13 +45,13 @@ class ProductTest {
         Product productWithConstructor = new Product(
             "Constructor Product", 
             "Constructor Description", 
-            200.0, 
+            Money.of(200.0), 
             15
         );
         
         assertThat(productWithConstructor.getName()).isEqualTo("Constructor Product");
         assertThat(productWithConstructor.getDescription()).isEqualTo("Constructor Description");
-        assertThat(productWithConstructor.getPrice()).isEqualTo(200.0);
+        assertThat(productWithConstructor.getPrice()).isEqualTo(Money.of(200.0));
         assertThat(productWithConstructor.getQuantity()).isEqualTo(15);
     }
     
@@ -1,13 +1,18 @@
 package com.onlinestore.repository;
 
+import com.onlinestore.model.Category;
+import com.onlinestore.model.Money;
 import com.onlinestore.model.Product;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest
@@ -23,7 +28,7 @@ class ProductRepositoryTest {
     @Test
     void testSaveProduct() {
         // Given
-        Product product = new Product("Test Product", "Test Description", 100.0, 10);
+        Product product = new Product("Test Product", "Test Description", Money.of(100.0), 10);
         
         // When
         Product saved = productRepository.save(product);
@@ -32,13 +37,13 @@ class ProductRepositoryTest {
         assertThat(saved).isNotNull();
         assertThat(saved.getId()).isNotNull();
         assertThat(saved.getName()).isEqualTo("Test Product");
-        assertThat(saved.getPrice()).isEqualTo(100.0);
+        assertThat(saved.getPrice()).isEqualTo(Money.of(100.0));
     }
     
     @Test
     void testFindById() {
         // Given
-        Product product = new Product("Test Product", "Test Description", 100.0, 10);
+        Product product = new Product("Test Product", "Test Description", Money.of(100.0), 10);
         Product saved = entityManager.persist(product);
         entityManager.flush();
         
@@ -53,8 +58,8 @@ class ProductRepositoryTest {
     @Test
     void testFindAll() {
         // Given
-        Product product1 = new Product("Product 1", "Description 1", 100.0, 10);
-        Product product2 = new Product("Product 2", "Description 2", 200.0, 20);
+        Product product1 = new Product("Product 1", "Description 1", Money.of(100.0), 10);
+        Product product2 = new Product("Product 2", "Description 2", Money.of(200.0), 20);
         
         entityManager.persist(product1);
         entityManager.persist(product2);
@@ -72,7 +77,7 @@ class ProductRepositoryTest {
     @Test
     void testDeleteById() {
         // Given
-        Product product = new Product("Test Product", "Test Description", 100.0, 10);
+        Product product = new Product("Test Product", "Test Description", Money.of(100.0), 10);
         Product saved = entityManager.persist(product);
         entityManager.flush();
         
@@ -83,4 +88,70 @@ class ProductRepositoryTest {
         Optional<Product> found = productRepository.findById(saved.getId());
         assertThat(found).isEmpty();
     }
+    
+    @Test
+    void testStreamAllOrderedById() {
+        // Given
+        entityManager.persist(new Product("Product 1", "Description 1", Money.of(100.0), 10));
+        entityManager.persist(new Product("Product 2", "Description 2", Money.of(200.0), 20));
+        entityManager.flush();
+        
+        // When
+        List<String> names;
+        try (Stream<Product> stream = productRepository.streamAll()) {
+            names = stream.map(Product::getName).collect(Collectors.toList());
+        }
+        
+        // Then
+        assertThat(names).containsExactly("Product 1", "Product 2");
+    }
+    
+    @Test
+    void testAggregateStatistics() {
+        entityManager.persist(new Product("Product 1", "Description 1", Money.of(100.0), 10));
+        entityManager.persist(new Product("Product 2", "Description 2", Money.of(200.0), 0));
+        entityManager.persist(new Product("Product 3", "Description 3", Money.of(300.0), 3));
+        entityManager.flush();
+        
+        Object[] row = productRepository.aggregateStatistics(5).get(0);
+        
+        assertThat(((Number) row[0]).longValue()).isEqualTo(3);
+        assertThat(row[1]).isEqualTo(Money.of(600.0));
+        assertThat(Money.of((BigDecimal) row[2])).isEqualTo(Money.of(1900.0));
+        assertThat(((Number) row[3]).longValue()).isEqualTo(13);
+        assertThat(((Number) row[4]).longValue()).isEqualTo(2);
+        assertThat(((Number) row[5]).longValue()).isEqualTo(1);
+        assertThat(((Number) row[6]).longValue()).isEqualTo(2);
+    }
+    
+    @Test
+    void testReserveStockIsConditional() {
+        Product saved = entityManager.persist(new Product("Product 1", "Description 1", Money.of(100.0), 5));
+        entityManager.flush();
+        
+        assertThat(productRepository.reserveStock(saved.getId(), 3)).isEqualTo(1);
+        assertThat(productRepository.reserveStock(saved.getId(), 3)).isZero();
+        assertThat(productRepository.findById(saved.getId()).get().getQuantity()).isEqualTo(2);
+        
+        productRepository.releaseStock(saved.getId(), 3);
+        assertThat(productRepository.findById(saved.getId()).get().getQuantity()).isEqualTo(5);
+    }
+    
+    @Test
+    void testFindByCategoryTreeIncludesSubcategories() {
+        Product laptop = entityManager.persist(new Product("Laptop", null, Money.of(500.0), 1));
+        Product mouse = entityManager.persist(new Product("Mouse", null, Money.of(10.0), 1));
+        entityManager.persist(new Product("Chair", null, Money.of(50.0), 1));
+        Category electronics = entityManager.persist(new Category("Electronics", null));
+        Category accessories = new Category("Accessories", electronics.getId());
+        accessories.getProducts().add(mouse);
+        electronics.getProducts().add(laptop);
+        entityManager.persist(accessories);
+        entityManager.flush();
+        
+        assertThat(productRepository.findByCategoryTree("Electronics"))
+                .extracting(Product::getName).containsExactly("Laptop", "Mouse");
+        assertThat(productRepository.findByCategoryTree("Accessories"))
+                .extracting(Product::getName).containsExactly("Mouse");
+    }
 }
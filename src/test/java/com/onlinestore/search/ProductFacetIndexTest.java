@@ -0,0 +1,85 @@
+package com.onlinestore.search;
+
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Category;
+import com.onlinestore.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+class ProductFacetIndexTest {
+    
+    private ProductFacetIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new ProductFacetIndex();
+        List<Category> categories = Arrays.asList(
+                category(1L, "Электроника", null),
+                category(2L, "Смартфоны", 1L),
+                category(3L, "Аксессуары", null)
+        );
+        List<Object[]> links = Arrays.asList(
+                new Object[]{2L, 10L},
+                new Object[]{2L, 11L},
+                new Object[]{3L, 12L},
+                new Object[]{1L, 13L}
+        );
+        index.load(categories, links, Arrays.asList(
+                product(10L, 30000.0, 5),
+                product(11L, 60000.0, 0),
+                product(12L, 500.0, 100),
+                product(13L, 4500.0, 2)
+        ));
+    }
+    
+    @Test
+    void testCategoryIncludesSubcategories() {
+        FacetResult result = index.search(new FacetQuery(1L, null, null, null));
+        
+        assertThat(result.getProductIds()).containsExactly(10L, 11L, 13L);
+        assertThat(result.getInStock()).isEqualTo(2);
+        assertThat(result.getOutOfStock()).isEqualTo(1);
+        assertThat(result.getCategories())
+                .extracting(FacetResult.CategoryCount::getName, FacetResult.CategoryCount::getCount)
+                .contains(tuple("Электроника", 3),
+                          tuple("Смартфоны", 2));
+    }
+    
+    @Test
+    void testPriceAndStockFiltersWithBuckets() {
+        FacetResult result = index.search(new FacetQuery(null, 1000.0, null, true));
+        
+        assertThat(result.getProductIds()).containsExactly(10L, 13L);
+        assertThat(result.getPriceBuckets()).extracting(FacetResult.PriceBucket::getCount)
+                .containsExactly(0, 1, 0, 1, 0);
+    }
+    
+    @Test
+    void testUpdatesFromEvents() {
+        Product soldOut = product(10L, 30000.0, 0);
+        index.onProductChanged(ProductChangedEvent.saved(soldOut));
+        index.onProductChanged(ProductChangedEvent.deleted(List.of(13L)));
+        
+        FacetResult result = index.search(new FacetQuery(1L, null, null, null));
+        assertThat(result.getProductIds()).containsExactly(10L, 11L);
+        assertThat(result.getOutOfStock()).isEqualTo(2);
+        assertThat(index.findCategoryId("Смартфоны")).isEqualTo(2L);
+    }
+    
+    private Category category(Long id, String name, Long parentId) {
+        Category category = new Category(name, parentId);
+        category.setId(id);
+        return category;
+    }
+    
+    private Product product(Long id, Double price, int quantity) {
+        Product product = new Product("Товар " + id, null, Money.of(price), quantity);
+        product.setId(id);
+        return product;
+    }
+}
@@ -0,0 +1,63 @@
+package com.onlinestore.search;
+
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTest {
+    
+    private ProductSearchIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.indexAll(Arrays.asList(
+                product(1L, "Смартфон Galaxy S21", "Черный, 128 ГБ"),
+                product(2L, "Чехол для смартфона", "Силиконовый чехол"),
+                product(3L, "Ноутбук Зёрнышко", "Легкий ноутбук 14\"")
+        ));
+    }
+    
+    @Test
+    void testSearchIntersectsTerms() {
+        assertThat(index.search("смартфон galaxy")).containsExactly(1L);
+        assertThat(index.search("чехол силиконовый")).containsExactly(2L);
+    }
+    
+    @Test
+    void testLastTermMatchesAsPrefix() {
+        assertThat(index.search("смартф")).containsExactly(1L, 2L);
+        assertThat(index.search("ноут")).containsExactly(3L);
+    }
+    
+    @Test
+    void testNormalizesCaseAndYo() {
+        assertThat(index.search("ЗЕРНЫШКО")).containsExactly(3L);
+    }
+    
+    @Test
+    void testUpdateReplacesOldTerms() {
+        index.indexAll(List.of(product(1L, "Планшет", null)));
+        
+        assertThat(index.search("galaxy")).isEmpty();
+        assertThat(index.search("планшет")).containsExactly(1L);
+    }
+    
+    @Test
+    void testRemove() {
+        index.removeAll(List.of(2L));
+        
+        assertThat(index.search("чехол")).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+    
+    private Product product(Long id, String name, String description) {
+        Product product = new Product(name, description, Money.of(100.0), 1);
+        product.setId(id);
+        return product;
+    }
+}
@@ -0,0 +1,110 @@
+package com.onlinestore.search;
+
+import com.onlinestore.event.OrderPlacedEvent;
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Order;
+import com.onlinestore.model.OrderItem;
+import com.onlinestore.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSuggestIndexTest {
+    
+    private ProductSuggestIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new ProductSuggestIndex();
+        Map<Long, Long> sales = new HashMap<>();
+        sales.put(1L, 5L);
+        sales.put(2L, 50L);
+        sales.put(3L, 1L);
+        index.putAll(Arrays.asList(
+                product(1L, "iPhone 13"),
+                product(2L, "iPhone 15 Pro"),
+                product(3L, "iPad Air"),
+                product(4L, "Наушники")
+        ), sales);
+    }
+    
+    @Test
+    void testSuggestOrdersBySales() {
+        assertThat(index.suggest("iP")).containsExactly("iPhone 15 Pro", "iPhone 13", "iPad Air");
+        assertThat(index.suggest("iph")).containsExactly("iPhone 15 Pro", "iPhone 13");
+        assertThat(index.suggest("нау")).containsExactly("Наушники");
+        assertThat(index.suggest("x")).isEmpty();
+    }
+    
+    @Test
+    void testRenameAndDelete() {
+        index.onProductChanged(ProductChangedEvent.saved(product(2L, "Galaxy S24")));
+        index.onProductChanged(ProductChangedEvent.deleted(List.of(3L)));
+        
+        assertThat(index.suggest("i")).containsExactly("iPhone 13");
+        assertThat(index.suggest("gal")).containsExactly("Galaxy S24");
+    }
+    
+    @Test
+    void testKeepsOnlyTopK() {
+        List<Product> products = new ArrayList<>();
+        Map<Long, Long> sales = new HashMap<>();
+        for (long id = 100; id < 130; id++) {
+            products.add(product(id, "Кабель " + id));
+            sales.put(id, id);
+        }
+        index.putAll(products, sales);
+        
+        List<String> suggestions = index.suggest("каб");
+        assertThat(suggestions).hasSize(ProductSuggestIndex.TOP_K);
+        assertThat(suggestions.get(0)).isEqualTo("Кабель 129");
+        
+        index.onProductChanged(ProductChangedEvent.deleted(List.of(129L)));
+        assertThat(index.suggest("каб").get(0)).isEqualTo("Кабель 128");
+        assertThat(index.suggest("каб")).hasSize(ProductSuggestIndex.TOP_K);
+    }
+    
+    @Test
+    void testDuplicateNamesDoNotShrinkSuggestions() {
+        List<Product> products = new ArrayList<>();
+        Map<Long, Long> sales = new HashMap<>();
+        for (long id = 100; id < 120; id++) {
+            products.add(product(id, "Кабель USB"));
+            sales.put(id, 1000 + id);
+        }
+        for (long id = 200; id < 215; id++) {
+            products.add(product(id, "Кабель " + id));
+            sales.put(id, id);
+        }
+        index.putAll(products, sales);
+        
+        List<String> suggestions = index.suggest("каб");
+        assertThat(suggestions).hasSize(ProductSuggestIndex.TOP_K).doesNotHaveDuplicates();
+        assertThat(suggestions.get(0)).isEqualTo("Кабель USB");
+        
+        index.onProductChanged(ProductChangedEvent.deleted(List.of(119L)));
+        assertThat(index.suggest("каб").get(0)).isEqualTo("Кабель USB");
+    }
+    
+    @Test
+    void testPlacedOrdersRaiseWeights() {
+        Order order = new Order();
+        order.addItem(new OrderItem(order, product(3L, "iPad Air"), 100));
+        
+        index.onOrderPlaced(OrderPlacedEvent.of(order));
+        
+        assertThat(index.suggest("iP")).containsExactly("iPad Air", "iPhone 15 Pro", "iPhone 13");
+    }
+    
+    private Product product(Long id, String name) {
+        Product product = new Product(name, null, Money.of(100.0), 1);
+        product.setId(id);
+        return product;
+    }
+}
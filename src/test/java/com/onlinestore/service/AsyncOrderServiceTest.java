@@ -0,0 +1,121 @@
+package com.onlinestore.service;
+
+import com.onlinestore.dto.OrderRequest;
+import com.onlinestore.exception.InsufficientStockException;
+import com.onlinestore.model.Order;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class AsyncOrderServiceTest {
+
+    private OrderService orderService;
+
+    private AsyncOrderService asyncOrderService;
+
+    @BeforeEach
+    void setUp() {
+        orderService = mock(OrderService.class);
+        asyncOrderService = new AsyncOrderService(1, 1, 60);
+        ReflectionTestUtils.setField(asyncOrderService, "orderService", orderService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncOrderService.shutdown();
+    }
+
+    @Test
+    void testAcceptedOrderIsCreatedByWorker() throws Exception {
+        Order order = new Order();
+        order.setId(42L);
+        when(orderService.placeOrder(any())).thenReturn(order);
+
+        AsyncOrderService.Status status = asyncOrderService.accept(request());
+
+        assertThat(awaitDone(status.getRequestId())).isEqualTo(AsyncOrderService.State.CREATED);
+        assertThat(asyncOrderService.getStatus(status.getRequestId()).getOrderId()).isEqualTo(42L);
+        assertThat(asyncOrderService.getMetrics()).containsEntry("created", 1L);
+    }
+
+    @Test
+    void testRejectedOrderKeepsReason() throws Exception {
+        when(orderService.placeOrder(any())).thenThrow(new InsufficientStockException(5L, "Телефон", 1, 3));
+
+        AsyncOrderService.Status status = asyncOrderService.accept(request());
+
+        assertThat(awaitDone(status.getRequestId())).isEqualTo(AsyncOrderService.State.REJECTED);
+        assertThat(asyncOrderService.getStatus(status.getRequestId()).getError()).contains("Телефон");
+    }
+
+    @Test
+    void testFullQueueRejectsNewOrders() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.placeOrder(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new Order();
+        });
+
+        asyncOrderService.accept(request());
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        // Воркер занят, одно место в очереди
+        asyncOrderService.accept(request());
+
+        assertThatThrownBy(() -> asyncOrderService.accept(request()))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(asyncOrderService.getMetrics())
+                .containsEntry("queueDepth", 1)
+                .containsEntry("throttled", 1L);
+        release.countDown();
+    }
+
+    @Test
+    void testShutdownMarksUnprocessedOrdersFailed() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.placeOrder(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new Order();
+        });
+        ReflectionTestUtils.setField(asyncOrderService, "shutdownTimeoutMs", 50L);
+
+        asyncOrderService.accept(request());
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        AsyncOrderService.Status queued = asyncOrderService.accept(request());
+        asyncOrderService.shutdown();
+
+        assertThat(asyncOrderService.getStatus(queued.getRequestId()).getState())
+                .isEqualTo(AsyncOrderService.State.FAILED);
+        release.countDown();
+    }
+
+    private AsyncOrderService.State awaitDone(String requestId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        AsyncOrderService.State state = asyncOrderService.getStatus(requestId).getState();
+        while ((state == AsyncOrderService.State.QUEUED || state == AsyncOrderService.State.PROCESSING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            state = asyncOrderService.getStatus(requestId).getState();
+        }
+        return state;
+    }
+
+    private OrderRequest request() {
+        OrderRequest request = new OrderRequest(1L, "Адрес");
+        request.addItem(5L, 1);
+        return request;
+    }
+}
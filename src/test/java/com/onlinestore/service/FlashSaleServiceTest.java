@@ -0,0 +1,78 @@
+package com.onlinestore.service;
+
+import com.onlinestore.repository.FlashSaleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+public class FlashSaleServiceTest {
+
+    private FlashSaleRepository flashSaleRepository;
+
+    private FlashSaleService flashSaleService;
+
+    @BeforeEach
+    void setUp() {
+        flashSaleRepository = mock(FlashSaleRepository.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(call -> call.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(jdbcTemplate.queryForList(startsWith("SELECT quantity"), eq(Integer.class), any()))
+                .thenReturn(List.of(10));
+
+        flashSaleService = new FlashSaleService();
+        ReflectionTestUtils.setField(flashSaleService, "flashSaleRepository", flashSaleRepository);
+        ReflectionTestUtils.setField(flashSaleService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(flashSaleService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(flashSaleService, "instanceId", "node-1");
+        flashSaleService.init();
+        flashSaleService.start(1L);
+    }
+
+    @Test
+    void testReservationInClosingWindowGoesToRowAfterStop() throws Exception {
+        // stop() остановлен внутри транзакции закрытия
+        CountDownLatch closing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        doAnswer(call -> {
+            closing.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(flashSaleRepository).deleteById(1L);
+        CompletableFuture<Integer> stopped = CompletableFuture.supplyAsync(() -> flashSaleService.stop(1L));
+        assertThat(closing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<FlashSaleService.Take> take =
+                CompletableFuture.supplyAsync(() -> flashSaleService.tryReserve(1L, 1));
+        Thread.sleep(100);
+        assertThat(take).isNotDone();
+
+        proceed.countDown();
+        assertThat(stopped.get(5, TimeUnit.SECONDS)).isEqualTo(10);
+        assertThat(take.get(5, TimeUnit.SECONDS)).isEqualTo(FlashSaleService.Take.CLOSED);
+    }
+
+    @Test
+    void testFailedStopKeepsSaleRunning() {
+        doThrow(new IllegalStateException("db down")).when(flashSaleRepository).deleteById(1L);
+
+        assertThatThrownBy(() -> flashSaleService.stop(1L)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(flashSaleService.tryReserve(1L, 3)).isEqualTo(FlashSaleService.Take.TAKEN);
+        assertThat(flashSaleService.getAvailable(1L)).isEqualTo(7);
+    }
+}
@@ -0,0 +1,137 @@
+package com.onlinestore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlinestore.model.IdempotencyRecord;
+import com.onlinestore.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+    
+    private IdempotencyRecordRepository repository;
+    private IdempotencyService service;
+    private final AtomicInteger executions = new AtomicInteger();
+    // Строки таблицы idempotency_keys
+    private final Map<String, IdempotencyRecord> rows = new ConcurrentHashMap<>();
+    
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyRecordRepository.class);
+        when(repository.findById(anyString())).thenAnswer(call -> Optional.ofNullable(rows.get(call.<String>getArgument(0))));
+        when(repository.claim(anyString(), anyString(), any(), any())).thenAnswer(call -> {
+            IdempotencyRecord marker = new IdempotencyRecord(call.getArgument(0), call.getArgument(1),
+                    IdempotencyRecord.IN_PROGRESS, null, call.getArgument(3));
+            return rows.putIfAbsent(call.getArgument(0), marker) == null ? 1 : 0;
+        });
+        when(repository.complete(anyString(), anyInt(), any(), any())).thenAnswer(call -> {
+            IdempotencyRecord row = rows.get(call.<String>getArgument(0));
+            row.setStatusCode(call.getArgument(1));
+            row.setResponseBody(call.getArgument(2));
+            return 1;
+        });
+        when(repository.release(anyString())).thenAnswer(call -> rows.remove(call.<String>getArgument(0)) != null ? 1 : 0);
+        service = newService();
+    }
+    
+    private IdempotencyService newService() {
+        IdempotencyService instance = new IdempotencyService(100, 24, 300);
+        ReflectionTestUtils.setField(instance, "repository", repository);
+        ReflectionTestUtils.setField(instance, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(instance, "pollMs", 10L);
+        return instance;
+    }
+    
+    @Test
+    void testRetryReturnsStoredResponse() {
+        ResponseEntity<?> first = service.execute("key-1", Map.of("userId", 1), this::createOrder);
+        ResponseEntity<?> retry = service.execute("key-1", Map.of("userId", 1), this::createOrder);
+        
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(retry.getBody()).isEqualTo("{\"id\":1}");
+        verify(repository).complete(eq("key-1"), eq(201), any(), any());
+    }
+    
+    @Test
+    void testSameKeyWithDifferentRequestIsRejected() {
+        service.execute("key-1", Map.of("userId", 1), this::createOrder);
+        
+        ResponseEntity<?> response = service.execute("key-1", Map.of("userId", 2), this::createOrder);
+        
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+    
+    @Test
+    void testServerErrorIsNotStored() {
+        service.execute("key-1", Map.of("userId", 1), () -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        service.execute("key-1", Map.of("userId", 1), this::createOrder);
+        
+        assertThat(executions.get()).isEqualTo(1);
+        verify(repository).release("key-1");
+        verify(repository, times(1)).complete(anyString(), anyInt(), any(), any());
+    }
+    
+    @Test
+    void testKeyIsReleasedWhenResponseCannotBeStored() {
+        doThrow(new IllegalStateException("db down")).when(repository).complete(anyString(), anyInt(), any(), any());
+        
+        ResponseEntity<?> first = service.execute("key-1", Map.of("userId", 1), this::createOrder);
+        
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        verify(repository, times(3)).complete(eq("key-1"), eq(201), any(), any());
+        verify(repository).release("key-1");
+        assertThat(rows).doesNotContainKey("key-1");
+    }
+    
+    @Test
+    void testConcurrentDuplicateOnAnotherInstanceWaitsForFirstRequest() throws Exception {
+        IdempotencyService other = newService();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                service.execute("key-1", Map.of("userId", 1), () -> {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return createOrder();
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        CompletableFuture<ResponseEntity<?>> duplicate = CompletableFuture.supplyAsync(() ->
+                other.execute("key-1", Map.of("userId", 1), this::createOrder));
+        Thread.sleep(100);
+        assertThat(duplicate).isNotDone();
+        release.countDown();
+        
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(duplicate.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("{\"id\":1}");
+        assertThat(executions.get()).isEqualTo(1);
+    }
+    
+    private ResponseEntity<?> createOrder() {
+        executions.incrementAndGet();
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", 1));
+    }
+}
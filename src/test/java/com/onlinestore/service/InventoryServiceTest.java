@@ -0,0 +1,181 @@
+package com.onlinestore.service;
+
+import com.onlinestore.exception.InsufficientStockException;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InventoryServiceTest {
+    
+    @Mock
+    private ProductRepository productRepository;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Mock
+    private FlashSaleService flashSaleService;
+    
+    @InjectMocks
+    private InventoryService inventoryService;
+    
+    @Test
+    void testSingleLineUsesConditionalUpdate() {
+        when(productRepository.reserveStock(1L, 2)).thenReturn(1);
+        when(productRepository.findAllById(List.of(1L))).thenReturn(new ArrayList<>(List.of(product(1L, 8))));
+        
+        List<Product> result = inventoryService.reserve(Map.of(1L, 2));
+        
+        assertThat(result).extracting(Product::getQuantity).containsExactly(8);
+        verify(productRepository, never()).findAllByIdForUpdate(any());
+        verify(eventPublisher).publishEvent(any(Object.class));
+    }
+    
+    @Test
+    void testMultiLineOrderLocksProductsOnceAndValidatesInMemory() {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(3L, 1);
+        quantities.put(1L, 2);
+        Product first = product(1L, 10);
+        Product third = product(3L, 5);
+        when(productRepository.findAllByIdForUpdate(any())).thenReturn(List.of(first, third));
+        
+        List<Product> result = inventoryService.reserve(quantities);
+        
+        verify(productRepository, never()).reserveStock(any(), anyInt());
+        assertThat(result).containsExactly(first, third);
+        assertThat(first.getQuantity()).isEqualTo(8);
+        assertThat(third.getQuantity()).isEqualTo(4);
+        verify(eventPublisher).publishEvent(any(Object.class));
+    }
+    
+    @Test
+    void testShortLineFailsWholeOrderWithoutTouchingStock() {
+        Product first = product(1L, 10);
+        Product second = product(2L, 3);
+        when(productRepository.findAllByIdForUpdate(any())).thenReturn(List.of(first, second));
+        
+        assertThatThrownBy(() -> inventoryService.reserve(Map.of(1L, 2, 2L, 5)))
+                .isInstanceOf(InsufficientStockException.class)
+                .satisfies(e -> {
+                    InsufficientStockException ex = (InsufficientStockException) e;
+                    assertThat(ex.getAvailable()).isEqualTo(3);
+                    assertThat(ex.getRequested()).isEqualTo(5);
+                });
+        
+        assertThat(first.getQuantity()).isEqualTo(10);
+        assertThat(second.getQuantity()).isEqualTo(3);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+    
+    @Test
+    void testOrdersInBatchSeeEachOthersReservations() {
+        Product product = product(1L, 5);
+        when(productRepository.findAllByIdForUpdate(any())).thenReturn(List.of(product));
+        
+        List<InventoryService.Reservation> result = inventoryService.reserveAll(List.of(Map.of(1L, 3), Map.of(1L, 3)));
+        
+        assertThat(result.get(0).isSuccess()).isTrue();
+        assertThat(result.get(1).getFailure().getAvailable()).isEqualTo(2);
+        assertThat(product.getQuantity()).isEqualTo(2);
+    }
+    
+    @Test
+    void testFlashSaleLinesAreReservedInMemory() {
+        when(flashSaleService.isActive(1L)).thenReturn(true);
+        when(flashSaleService.tryReserve(1L, 2)).thenReturn(FlashSaleService.Take.TAKEN);
+        when(flashSaleService.getAvailable(1L)).thenReturn(7);
+        when(productRepository.findAllByIdForUpdate(any())).thenReturn(List.of(product(2L, 9)));
+        when(productRepository.findAllById(any())).thenReturn(List.of(product(1L, 100)));
+        
+        List<Product> result = inventoryService.reserve(Map.of(1L, 2, 2L, 1));
+        
+        verify(productRepository, never()).reserveStock(any(), anyInt());
+        assertThat(result).extracting(Product::getQuantity).containsExactly(7, 8);
+    }
+    
+    @Test
+    void testSaleStartedDuringConditionalUpdateMovesLineToCounter() {
+        // Продажа включилась, пока UPDATE ждал блокировку строки: ее счетчик уже содержит этот остаток
+        when(productRepository.reserveStock(1L, 2)).thenReturn(1);
+        when(flashSaleService.findStarted(List.of(1L))).thenReturn(Set.of(1L));
+        when(flashSaleService.isActive(1L)).thenReturn(false);
+        when(flashSaleService.tryReserve(1L, 2)).thenReturn(FlashSaleService.Take.TAKEN);
+        when(flashSaleService.getAvailable(1L)).thenReturn(4);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product(1L, 6)));
+        
+        List<Product> result = inventoryService.reserve(Map.of(1L, 2));
+        
+        verify(productRepository).releaseStock(1L, 2);
+        verify(flashSaleService).tryReserve(1L, 2);
+        assertThat(result).extracting(Product::getQuantity).containsExactly(4);
+    }
+    
+    @Test
+    void testSaleRunByOtherInstanceIsNotSoldFromRow() {
+        // Строка flash_sales есть, а счетчика в этом экземпляре нет
+        Product first = product(1L, 10);
+        Product second = product(2L, 10);
+        when(productRepository.findAllByIdForUpdate(any())).thenReturn(List.of(first, second), List.of(first));
+        when(flashSaleService.findStarted(any())).thenReturn(Set.of(1L));
+        when(flashSaleService.tryReserve(1L, 2)).thenReturn(FlashSaleService.Take.CLOSED);
+        
+        assertThatThrownBy(() -> inventoryService.reserve(Map.of(1L, 2, 2L, 1)))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(first.getQuantity()).isEqualTo(10);
+        assertThat(second.getQuantity()).isEqualTo(10);
+    }
+    
+    @Test
+    void testLineOfClosingSaleIsReservedFromRow() {
+        // Продажа закрылась после выбора пути: остаток уже записан в строку
+        Product product = product(1L, 5);
+        when(flashSaleService.isActive(1L)).thenReturn(true);
+        when(flashSaleService.tryReserve(1L, 2)).thenReturn(FlashSaleService.Take.CLOSED);
+        when(productRepository.findAllByIdForUpdate(List.of(1L))).thenReturn(List.of(product));
+        
+        List<Product> result = inventoryService.reserve(Map.of(1L, 2));
+        
+        assertThat(result).containsExactly(product);
+        assertThat(product.getQuantity()).isEqualTo(3);
+    }
+    
+    @Test
+    void testFlashStockReturnsToCounterOnlyAfterCommit() {
+        when(flashSaleService.isActive(1L)).thenReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            inventoryService.release(Map.of(1L, 2));
+            verify(flashSaleService, never()).release(any(), anyInt());
+            
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            verify(flashSaleService).release(1L, 2);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    private Product product(Long id, int quantity) {
+        Product product = new Product("Товар " + id, null, Money.of(100.0), quantity);
+        product.setId(id);
+        return product;
+    }
+}
@@ -0,0 +1,126 @@
+package com.onlinestore.service;
+
+import com.onlinestore.dto.OrderRequest;
+import com.onlinestore.exception.InsufficientStockException;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Order;
+import com.onlinestore.model.Product;
+import com.onlinestore.model.User;
+import com.onlinestore.repository.OrderRepository;
+import com.onlinestore.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderIntakeServiceTest {
+    
+    @Mock
+    private OrderRepository orderRepository;
+    
+    @Mock
+    private UserRepository userRepository;
+    
+    @Mock
+    private InventoryService inventoryService;
+    
+    @Spy
+    private OrderService orderService = new OrderService();
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Mock
+    private OrderStatusHistoryService historyService;
+    
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    
+    @InjectMocks
+    private OrderIntakeService intakeService;
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchIsWrittenInOneTransactionAndFailuresStayPerOrder() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        Product product = new Product("Телефон", null, Money.of(100.0), 10);
+        product.setId(5L);
+        when(userRepository.findAllById(any())).thenReturn(List.of(user));
+        when(inventoryService.reserveAll(anyList())).thenReturn(List.of(
+                new InventoryService.Reservation(List.of(product), null),
+                new InventoryService.Reservation(null, new InsufficientStockException(5L, "Телефон", 1, 3))));
+        
+        OrderIntakeService.Pending first = new OrderIntakeService.Pending(request(1L, 2));
+        OrderIntakeService.Pending second = new OrderIntakeService.Pending(request(1L, 3));
+        OrderIntakeService.Pending unknownUser = new OrderIntakeService.Pending(request(2L, 1));
+        intakeService.write(List.of(first, second, unknownUser));
+        
+        ArgumentCaptor<List<Map<Long, Integer>>> quantities = ArgumentCaptor.forClass(List.class);
+        verify(inventoryService).reserveAll(quantities.capture());
+        assertThat(quantities.getValue()).containsExactly(Map.of(5L, 2), Map.of(5L, 3));
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(orderRepository, times(1)).saveAll(anyList());
+        
+        Order order = first.future.get();
+        assertThat(order.getTotalAmount()).isEqualTo(Money.of(200.0));
+        assertThatThrownBy(() -> second.future.get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(InsufficientStockException.class);
+        assertThatThrownBy(() -> unknownUser.future.get())
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+    
+    @Test
+    void testTimedOutOrderIsWithdrawnBeforeBatchTakesIt() throws Exception {
+        BlockingQueue<OrderIntakeService.Pending> queue = new ArrayBlockingQueue<>(4);
+        ReflectionTestUtils.setField(intakeService, "queue", queue);
+        
+        assertThatThrownBy(() -> intakeService.place(request(1L, 2), 10))
+                .isInstanceOf(TimeoutException.class);
+        
+        // Заказ остался в очереди, но пачка его уже не заберет
+        assertThat(queue).hasSize(1);
+        assertThat(queue.peek().claim()).isFalse();
+        verifyNoInteractions(inventoryService);
+    }
+    
+    @Test
+    void testRepeatedProductLinesBecomeOneOrderItem() {
+        Product product = new Product("Телефон", null, Money.of(100.0), 10);
+        product.setId(5L);
+        OrderRequest request = request(1L, 2);
+        request.addItem(5L, 1);
+        
+        Order order = orderService.buildOrder(request, new User(), List.of(product));
+        
+        assertThat(order.getItems()).hasSize(1);
+        assertThat(order.getItems().get(0).getQuantity()).isEqualTo(3);
+        assertThat(order.getTotalAmount()).isEqualTo(Money.of(300.0));
+    }
+    
+    private OrderRequest request(Long userId, int quantity) {
+        OrderRequest request = new OrderRequest(userId, "Адрес");
+        request.addItem(5L, quantity);
+        return request;
+    }
+}
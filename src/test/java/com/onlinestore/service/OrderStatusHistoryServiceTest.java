@@ -0,0 +1,149 @@
+package com.onlinestore.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import java.sql.PreparedStatement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class OrderStatusHistoryServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    private OrderStatusHistoryService historyService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        historyService = new OrderStatusHistoryService();
+        ReflectionTestUtils.setField(historyService, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        historyService.shutdown();
+    }
+
+    @Test
+    void testBufferedTransitionsAreWrittenByOneMultiRowInsert() throws Exception {
+        historyService.record(1L, null, "PENDING");
+        historyService.record(1L, "PENDING", "PROCESSING");
+        historyService.record(2L, "PENDING", "CANCELLED");
+        verifyNoInteractions(jdbcTemplate);
+        assertThat(historyService.getBuffered()).isEqualTo(3);
+
+        historyService.flush();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<PreparedStatementSetter> setter = ArgumentCaptor.forClass(PreparedStatementSetter.class);
+        verify(jdbcTemplate, times(1)).update(sql.capture(), setter.capture());
+        assertThat(sql.getValue()).startsWith("INSERT INTO order_status_history");
+        PreparedStatement statement = mock(PreparedStatement.class);
+        setter.getValue().setValues(statement);
+        // 5 колонок на строку: new_status второй строки - 8-й параметр, третьей - 13-й
+        verify(statement).setString(8, "PROCESSING");
+        verify(statement).setString(13, "CANCELLED");
+        assertThat(historyService.getBuffered()).isZero();
+        assertThat(historyService.getWritten()).isEqualTo(3);
+    }
+
+    @Test
+    void testFullBatchIsFlushedWithoutWaitingForTimer() {
+        ReflectionTestUtils.setField(historyService, "flushSize", 2);
+
+        historyService.record(1L, "PENDING", "PROCESSING");
+        historyService.record(2L, "PENDING", "PROCESSING");
+
+        verify(jdbcTemplate, timeout(5000)).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    @Test
+    void testFailedBatchStaysBufferedUntilNextFlush() {
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+                .thenThrow(new RuntimeException("connection refused"))
+                .thenReturn(1);
+        historyService.record(1L, "PROCESSING", "SHIPPED");
+
+        historyService.flush();
+        assertThat(historyService.getBuffered()).isEqualTo(1);
+
+        historyService.flush();
+        assertThat(historyService.getBuffered()).isZero();
+        assertThat(historyService.getWritten()).isEqualTo(1);
+    }
+
+    @Test
+    void testRowThatKeepsFailingIsDroppedWithoutBlockingOthers() {
+        // Многострочный INSERT падает всегда, из одиночных - только первый (битая строка)
+        AtomicInteger singles = new AtomicInteger();
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(call -> {
+            boolean multiRow = call.<String>getArgument(0).contains("), (CAST");
+            if (multiRow || singles.getAndIncrement() == 0) {
+                throw new RuntimeException("value too long for type character varying(20)");
+            }
+            return 1;
+        });
+        historyService.record(1L, "PENDING", "BROKEN");
+        historyService.record(2L, "PENDING", "PROCESSING");
+        historyService.record(3L, "PENDING", "CANCELLED");
+
+        historyService.flush();
+        historyService.flush();
+        assertThat(historyService.getBuffered()).isEqualTo(3);
+
+        historyService.flush();
+        assertThat(historyService.getBuffered()).isZero();
+        assertThat(historyService.getWritten()).isEqualTo(2);
+        assertThat(historyService.getDropped()).isEqualTo(1);
+    }
+
+    @Test
+    void testSyncModeWaitsForWrite() {
+        ReflectionTestUtils.setField(historyService, "durability", OrderStatusHistoryService.Durability.SYNC);
+
+        historyService.record(1L, "SHIPPED", "DELIVERED");
+
+        verify(jdbcTemplate).update(anyString(), any(PreparedStatementSetter.class));
+        assertThat(historyService.getWritten()).isEqualTo(1);
+    }
+
+    @Test
+    void testSyncModeWaitsOutsideTransaction() throws Exception {
+        ReflectionTestUtils.setField(historyService, "durability", OrderStatusHistoryService.Durability.SYNC);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+
+        assertThat(historyService.openSyncScope()).isTrue();
+        TransactionSynchronizationManager.initSynchronization();
+        CompletableFuture<Void> written;
+        try {
+            written = historyService.record(1L, "PENDING", "PROCESSING");
+            // afterCommit только ставит переход в очередь и не ждет записи
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            assertThat(written).isNotDone();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        release.countDown();
+        historyService.closeSyncScope();
+        assertThat(written).isDone();
+        assertThat(historyService.getWritten()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.onlinestore.service;
+
+import com.onlinestore.dto.ProductBulkRequest;
+import com.onlinestore.event.ProductChangedEvent;
+import com.onlinestore.model.Money;
+import com.onlinestore.model.Category;
+import com.onlinestore.model.Product;
+import com.onlinestore.repository.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductBulkServiceTest {
+    
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    
+    @Mock
+    private CategoryRepository categoryRepository;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    
+    @InjectMocks
+    private ProductBulkService bulkService;
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPricePercentByCategoryRunsOneStatementPerIdChunk() {
+        // Given: id от 1 до 12000, чанк по 5000 -> 3 чанка
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("min_id", 1L);
+        bounds.put("max_id", 12000L);
+        when(jdbcTemplate.queryForMap(anyString(), any(SqlParameterSource.class))).thenReturn(bounds);
+        Category phones = new Category();
+        phones.setId(7L);
+        when(categoryRepository.findByName("Телефоны")).thenReturn(Optional.of(phones));
+        Product updated = new Product("Телефон", null, Money.of(110.0), 1);
+        updated.setId(42L);
+        when(jdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(List.of(updated), Collections.emptyList(), Collections.emptyList());
+        
+        ProductBulkRequest request = new ProductBulkRequest(ProductBulkRequest.Operation.PRICE_PERCENT, BigDecimal.TEN);
+        request.setCategory("Телефоны");
+        
+        // When
+        Map<String, Object> result = bulkService.execute(request);
+        
+        // Then
+        assertThat(result.get("affected")).isEqualTo(1L);
+        assertThat(result.get("chunks")).isEqualTo(3);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate, times(3)).query(sql.capture(), params.capture(), any(RowMapper.class));
+        assertThat(sql.getValue()).startsWith("UPDATE products SET price").contains("RECURSIVE", "RETURNING");
+        assertThat(params.getValue().getValue("categoryId")).isEqualTo(7L);
+        assertThat(params.getValue().getValue("fromId")).isEqualTo(10001L);
+        verify(eventPublisher, times(1)).publishEvent(any(ProductChangedEvent.class));
+    }
+    
+    @Test
+    void testDeleteWithoutFilterIsRejected() {
+        ProductBulkRequest request = new ProductBulkRequest(ProductBulkRequest.Operation.DELETE, null);
+        
+        assertThatThrownBy(() -> bulkService.execute(request)).isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,91 @@
+package com.onlinestore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlinestore.dto.ImportChunkReport;
+import com.onlinestore.event.ProductChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductImportServiceTest {
+    
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    
+    @InjectMocks
+    private ProductImportService importService;
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCsvImportIsChunkedAndReportsBadRows() throws Exception {
+        // Given: 3 строки данных, одна с ошибкой, чанк по 2 строки
+        String csv = "name,price,quantity,description\n" +
+                "\"Ноутбук, 15\"\"\",50000,5,Игровой\n" +
+                "Телефон,abc,1,\n" +
+                "Планшет,30000,2,\n";
+        List<ImportChunkReport> reports = new ArrayList<>();
+        
+        // When
+        Map<String, Object> summary = importService.importProducts(new StringReader(csv),
+                ProductImportService.Format.CSV, 2, reports::add);
+        
+        // Then
+        assertThat(summary.get("imported")).isEqualTo(2L);
+        assertThat(summary.get("failed")).isEqualTo(1L);
+        assertThat(reports).hasSize(2);
+        assertThat(reports.get(0).getImported()).isEqualTo(1);
+        assertThat(reports.get(0).getErrors()).singleElement().asString().startsWith("line 3:");
+        assertThat(reports.get(1).getFirstLine()).isEqualTo(4);
+        
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), batches.capture());
+        assertThat(batches.getAllValues().get(0).get(0)[0]).isEqualTo("Ноутбук, 15\"");
+        verify(eventPublisher).publishEvent(any(ProductChangedEvent.class));
+    }
+    
+    @Test
+    void testNdjsonChunkRolledBackOnDatabaseError() throws Exception {
+        // Given
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+        String ndjson = "{\"name\":\"Мышь\",\"price\":500,\"quantity\":3}\n";
+        List<ImportChunkReport> reports = new ArrayList<>();
+        
+        // When
+        Map<String, Object> summary = importService.importProducts(new StringReader(ndjson),
+                ProductImportService.Format.NDJSON, 100, reports::add);
+        
+        // Then
+        assertThat(summary.get("imported")).isEqualTo(0L);
+        assertThat(reports.get(0).getFailed()).isEqualTo(1);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+}
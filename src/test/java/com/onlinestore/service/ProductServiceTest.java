@@ -1,18 +1,32 @@
 package com.onlinestore.service;
 
+import com.onlinestore.cache.ProductCache;
+import com.onlinestore.dto.ProductPageDto;
+import com.onlinestore.model.Money;
 import com.onlinestore.model.Product;
 import com.onlinestore.repository.ProductRepository;
+import com.onlinestore.search.ProductFacetIndex;
+import com.onlinestore.search.ProductSearchIndex;
+import com.onlinestore.util.CursorCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,6 +35,18 @@ public class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
     
+    @Mock
+    private ProductSearchIndex searchIndex;
+    
+    @Spy
+    private ProductCache productCache = new ProductCache(100, 10);
+    
+    @Mock
+    private ProductFacetIndex facetIndex;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
     @InjectMocks
     private ProductService productService;
     
@@ -29,10 +55,10 @@ public class ProductServiceTest {
     
     @BeforeEach
     void setUp() {
-        product1 = new Product("Продукт 1", "Описание 1", 100.0, 10);
+        product1 = new Product("Продукт 1", "Описание 1", Money.of(100.0), 10);
         product1.setId(1L);
         
-        product2 = new Product("Продукт 2", "Описание 2", 200.0, 20);
+        product2 = new Product("Продукт 2", "Описание 2", Money.of(200.0), 20);
         product2.setId(2L);
     }
     
@@ -66,6 +92,21 @@ public class ProductServiceTest {
         verify(productRepository, times(1)).findById(1L);
     }
     
+    @Test
+    void testGetProductByIdServedFromCache() {
+        // Given
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
+        
+        // When: второй запрос не идет в БД, а изменение копии не портит кэш
+        Product first = productService.getProductById(1L);
+        first.setQuantity(0);
+        Product second = productService.getProductById(1L);
+        
+        // Then
+        assertThat(second.getQuantity()).isEqualTo(10);
+        verify(productRepository, times(1)).findById(1L);
+    }
+    
     @Test
     void testGetProductByIdNotFound() {
         // Given
@@ -82,7 +123,7 @@ public class ProductServiceTest {
     @Test
     void testSaveProduct() {
         // Given
-        Product newProduct = new Product("Новый продукт", "Описание", 300.0, 30);
+        Product newProduct = new Product("Новый продукт", "Описание", Money.of(300.0), 30);
         when(productRepository.save(any(Product.class))).thenReturn(newProduct);
         
         // When
@@ -91,7 +132,7 @@ public class ProductServiceTest {
         // Then
         assertThat(result).isNotNull();
         assertThat(result.getName()).isEqualTo("Новый продукт");
-        assertThat(result.getPrice()).isEqualTo(300.0);
+        assertThat(result.getPrice()).isEqualTo(Money.of(300.0));
         verify(productRepository, times(1)).save(newProduct);
     }
     
@@ -103,4 +144,122 @@ public class ProductServiceTest {
         // Then
         verify(productRepository, times(1)).deleteById(1L);
     }
+    
+    @Test
+    void testSearchProductsUsesIndex() {
+        // Given
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.search("продукт")).thenReturn(Arrays.asList(1L, 2L));
+        when(productRepository.findAllById(Arrays.asList(1L, 2L)))
+                .thenReturn(new java.util.ArrayList<>(Arrays.asList(product2, product1)));
+        
+        // When
+        List<Product> result = productService.searchProducts("продукт");
+        
+        // Then
+        assertThat(result).containsExactly(product1, product2);
+        verify(productRepository, never()).findAll();
+    }
+    
+    @Test
+    void testSearchProductsFallsBackToDatabase() {
+        // Given
+        when(searchIndex.isReady()).thenReturn(false);
+        when(productRepository.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase("1", "1"))
+                .thenReturn(List.of(product1));
+        
+        // When
+        List<Product> result = productService.searchProducts("1");
+        
+        // Then
+        assertThat(result).containsExactly(product1);
+        verify(searchIndex, never()).search(any());
+    }
+    
+    @Test
+    void testGetProductsByCategoryFallsBackToDatabase() {
+        when(facetIndex.isReady()).thenReturn(false);
+        when(productRepository.findByCategoryTree("Электроника")).thenReturn(List.of(product1));
+        
+        assertThat(productService.getProductsByCategory("Электроника")).containsExactly(product1);
+        verify(facetIndex, never()).search(any());
+    }
+    
+    @Test
+    void testUpdatePriceWritesLockedRowNotCachedCopy() {
+        // Given: в кэше устаревший остаток, в БД заказы уже списали часть товара
+        Product cached = new Product("Продукт 1", "Описание 1", Money.of(100.0), 10);
+        cached.setId(1L);
+        productCache.get(1L, key -> cached);
+        product1.setQuantity(3);
+        when(productRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(product1));
+    
+        // When
+        Product updated = productService.updatePrice(1L, new BigDecimal("150.00"));
+    
+        // Then
+        assertThat(updated.getPrice()).isEqualTo(Money.parse("150.00"));
+        assertThat(updated.getQuantity()).isEqualTo(3);
+        verify(productRepository, never()).save(any());
+    }
+    
+    @Test
+    void testUpdateProductKeepsFieldsOfLockedRow() {
+        // Given: в запросе только редактируемые поля, дата создания берется из строки в БД
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+        product1.setCreatedAt(createdAt);
+        when(productRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(product1));
+        Product changes = new Product("Продукт 1+", "Новое описание", Money.of(120.0), 7);
+        
+        // When
+        Product updated = productService.updateProduct(1L, changes);
+        
+        // Then
+        assertThat(updated.getName()).isEqualTo("Продукт 1+");
+        assertThat(updated.getQuantity()).isEqualTo(7);
+        assertThat(updated.getCreatedAt()).isEqualTo(createdAt);
+        verify(productRepository, never()).save(any());
+    }
+    
+    @Test
+    void testGetProductsPageReturnsCursorForNextPage() {
+        // Given: запрашиваем 1 товар, репозиторий отдает size + 1 строк
+        when(productRepository.findAllByOrderByPriceAscIdAsc(any(Pageable.class)))
+                .thenReturn(Arrays.asList(product1, product2));
+        when(productRepository.findPageAfterPriceAsc(eq(Money.of(100.0)), eq(1L), any(Pageable.class)))
+                .thenReturn(List.of(product2));
+        
+        // When
+        ProductPageDto first = productService.getProductsPage("price_asc", null, 1);
+        ProductPageDto second = productService.getProductsPage("price_asc", first.getNextCursor(), 1);
+        
+        // Then
+        assertThat(first.getProducts()).containsExactly(product1);
+        assertThat(first.isHasMore()).isTrue();
+        assertThat(second.getProducts()).containsExactly(product2);
+        assertThat(second.getNextCursor()).isNull();
+    }
+    
+    @Test
+    void testGetProductsPageRejectsCursorOfOtherSort() {
+        String cursor = CursorCodec.encode("id", "", "1");
+        
+        assertThatThrownBy(() -> productService.getProductsPage("price_desc", cursor, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    @Test
+    void testFuzzySearchFallbackToleratesTypos() {
+        // Given: H2/тесты - похожесть считается в памяти
+        Product phone = new Product("Смартфон Samsung", "Описание", Money.of(100.0), 1);
+        phone.setId(3L);
+        when(productRepository.findAll()).thenReturn(Arrays.asList(product1, product2, phone));
+        ReflectionTestUtils.setField(productService, "fuzzyThreshold", 0.3);
+        
+        // When
+        List<Product> result = productService.fuzzySearchProducts("смартфн samsng", 10);
+        
+        // Then
+        assertThat(result).containsExactly(phone);
+    }
 }
@@ -0,0 +1,67 @@
+package com.onlinestore.service;
+
+import com.onlinestore.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReservationExpiryServiceTest {
+
+    private OrderRepository orderRepository;
+
+    private OrderCancellationService cancellationService;
+
+    private ReservationExpiryService expiryService;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        cancellationService = mock(OrderCancellationService.class);
+        expiryService = new ReservationExpiryService(1000);
+        ReflectionTestUtils.setField(expiryService, "orderRepository", orderRepository);
+        ReflectionTestUtils.setField(expiryService, "cancellationService", cancellationService);
+        ReflectionTestUtils.setField(expiryService, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    void testExpiredOrdersAreCancelledInOneBatch() {
+        expiryService.track(1L, LocalDateTime.now().minusMinutes(31));
+        expiryService.track(2L, LocalDateTime.now().minusMinutes(45));
+        expiryService.track(3L, LocalDateTime.now());
+        assertThat(expiryService.getTrackedCount()).isEqualTo(3);
+
+        // Заказ 2 уже оплачен и не PENDING
+        when(cancellationService.cancel(any(), eq(OrderCancellationService.PENDING))).thenReturn(List.of(1L));
+
+        expiryService.expire();
+
+        verify(cancellationService).cancel(List.of(1L, 2L), OrderCancellationService.PENDING);
+        assertThat(expiryService.getExpiredCount()).isEqualTo(1);
+        // Заказ 3 ждет своего срока
+        assertThat(expiryService.getTrackedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailedBatchIsRetriedOnNextTick() {
+        expiryService.track(1L, LocalDateTime.now().minusHours(1));
+        when(cancellationService.cancel(any(), any()))
+                .thenThrow(new RuntimeException("lock timeout"))
+                .thenReturn(List.of());
+
+        expiryService.expire();
+        assertThat(expiryService.getTrackedCount()).isEqualTo(1);
+
+        expiryService.expire();
+        assertThat(expiryService.getTrackedCount()).isZero();
+        assertThat(expiryService.getExpiredCount()).isZero();
+    }
+}
@@ -0,0 +1,76 @@
+package com.onlinestore.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedStockCounterTest {
+    
+    @Test
+    void testTakeAcrossStripes() {
+        StripedStockCounter counter = new StripedStockCounter(10, 4);
+        
+        assertThat(counter.tryTake(7)).isTrue();
+        assertThat(counter.available()).isEqualTo(3);
+        assertThat(counter.tryTake(4)).isFalse();
+        assertThat(counter.available()).isEqualTo(3);
+        
+        counter.put(1);
+        assertThat(counter.tryTake(4)).isTrue();
+        assertThat(counter.available()).isZero();
+    }
+    
+    @Test
+    void testConcurrentTakesNeverOversell() throws Exception {
+        StripedStockCounter counter = new StripedStockCounter(1000, 8);
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 5000; i++) {
+            executor.execute(() -> {
+                if (counter.tryTake(1)) {
+                    sold.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        
+        assertThat(sold.get()).isEqualTo(1000);
+        assertThat(counter.available()).isZero();
+    }
+    
+    @Test
+    void testConcurrentMultiUnitTakesDoNotFailSpuriously() throws Exception {
+        // По единице в полосе: каждое взятие 3 собирается из нескольких полос,
+        // и остатка хватает всем потокам
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 2000; round++) {
+                StripedStockCounter counter = new StripedStockCounter(3 * threads, 16);
+                CyclicBarrier barrier = new CyclicBarrier(threads);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(() -> {
+                        barrier.await();
+                        return counter.tryTake(3);
+                    }));
+                }
+                
+                for (Future<Boolean> result : results) {
+                    assertThat(result.get(5, TimeUnit.SECONDS)).isTrue();
+                }
+                assertThat(counter.available()).isZero();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
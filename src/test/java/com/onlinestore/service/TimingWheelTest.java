@@ -0,0 +1,66 @@
+package com.onlinestore.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    @Test
+    void testFiresAcrossLevels() {
+        TimingWheel wheel = new TimingWheel(10, 4, 0);
+        assertThat(wheel.add(1, 5)).isTrue();
+        assertThat(wheel.add(2, 25)).isTrue();
+        assertThat(wheel.add(3, 1000)).isTrue();
+        assertThat(wheel.add(4, 39)).isTrue();
+
+        assertThat(advance(wheel, 9)).isEmpty();
+        assertThat(advance(wheel, 10)).containsExactly(1L);
+        assertThat(advance(wheel, 30)).containsExactly(2L);
+        assertThat(advance(wheel, 40)).containsExactly(4L);
+        assertThat(advance(wheel, 999)).isEmpty();
+        assertThat(advance(wheel, 1010)).containsExactly(3L);
+        assertThat(wheel.size()).isZero();
+
+        // Срок уже прошел
+        assertThat(wheel.add(5, 500)).isFalse();
+    }
+
+    @Test
+    void testEveryTimerFiresOnceWithinOneTick() {
+        Random random = new Random(42);
+        TimingWheel wheel = new TimingWheel(10, 8, 1_000);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long id = 0; id < 2_000; id++) {
+            long deadline = 1_000 + random.nextInt(100_000);
+            deadlines.put(id, deadline);
+            wheel.add(id, deadline);
+        }
+
+        Map<Long, Long> firedAt = new HashMap<>();
+        long now = 1_000;
+        while (now < 102_000) {
+            long previous = now;
+            now += 1 + random.nextInt(500);
+            long at = now;
+            wheel.advance(now, id -> {
+                assertThat(firedAt.put(id, at)).isNull();
+                // Не раньше срока и не позже тика после него
+                assertThat(at).isGreaterThanOrEqualTo(deadlines.get(id));
+                assertThat(previous).isLessThan(deadlines.get(id) + 10);
+            });
+        }
+        assertThat(firedAt).hasSameSizeAs(deadlines);
+        assertThat(wheel.size()).isZero();
+    }
+
+    private List<Long> advance(TimingWheel wheel, long now) {
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(now, fired::add);
+        return fired;
+    }
+}